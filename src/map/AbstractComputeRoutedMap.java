@@ -0,0 +1,207 @@
+package map;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * ConcurrentMap over a ConcurrentHashMap whose writes ALL go through one forward.compute() per key,
+ * so a subclass can do its extra work (ConcurrentValueIndexedMap: the value index,
+ * DurableConcurrentMap: the log record) under the key's bin lock in one place: {@link #update}.
+ *
+ *  - put, putIfAbsent, remove, replace, the compute methods, merge, replaceAll and clear are written
+ *    here once, as functions of the old value; only update() differs.
+ *  - Reads go straight to forward, without a lock.
+ *  - entrySet() iterates forward; Entry.setValue() and Iterator.remove() write through put()/remove(),
+ *    so they are routed like every other write.
+ * Null keys and values are rejected, as in ConcurrentHashMap.
+ */
+abstract class AbstractComputeRoutedMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+
+    final ConcurrentHashMap<K, V> forward = new ConcurrentHashMap<>();
+    private Set<Map.Entry<K, V>> entrySet;
+
+    /**
+     * forward.compute(key, function) plus the subclass's work for the change, inside the compute.
+     * @return the previous value if returnPrevious, else the new one (compute/merge semantics)
+     */
+    abstract V update(K key, BiFunction<? super K, ? super V, ? extends V> function, boolean returnPrevious);
+
+    // ---------------------------------------------------------------- reads
+
+    @Override
+    public int size() {
+        return forward.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return forward.containsKey(key);
+    }
+
+    @Override
+    public V get(Object key) {
+        return forward.get(key);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        return forward.getOrDefault(key, defaultValue);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return forward.containsValue(value);
+    }
+
+    // ---------------------------------------------------------------- writes, all through update()
+
+    @Override
+    public V put(K key, V value) {
+        Objects.requireNonNull(value);
+        return update(key, (k, old) -> value, true);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        Objects.requireNonNull(value);
+        return update(key, (k, old) -> old == null ? value : old, true);
+    }
+
+    @Override
+    public V remove(Object key) {
+        @SuppressWarnings("unchecked")
+        K k = (K) key; // only used for lookup/hashing, like ConcurrentHashMap.remove(Object)
+        return forward.containsKey(key) ? update(k, (kk, old) -> null, true) : null;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (value == null || !forward.containsKey(key)) {
+            return false;
+        }
+        @SuppressWarnings("unchecked")
+        K k = (K) key;
+        boolean[] removed = new boolean[1];
+        update(k, (kk, old) -> {
+            removed[0] = value.equals(old);
+            return removed[0] ? null : old;
+        }, true);
+        return removed[0];
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        Objects.requireNonNull(value);
+        return update(key, (k, old) -> old == null ? null : value, true);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Objects.requireNonNull(oldValue);
+        Objects.requireNonNull(newValue);
+        boolean[] replaced = new boolean[1];
+        update(key, (k, old) -> {
+            replaced[0] = oldValue.equals(old);
+            return replaced[0] ? newValue : old;
+        }, true);
+        return replaced[0];
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return update(key, remappingFunction, false);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        V current = forward.get(key);
+        return current != null ? current
+                : update(key, (k, old) -> old != null ? old : mappingFunction.apply(k), false);
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return forward.containsKey(key)
+                ? update(key, (k, old) -> old == null ? null : remappingFunction.apply(k, old), false)
+                : null;
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(value);
+        return update(key, (k, old) -> old == null ? value : remappingFunction.apply(old, value), false);
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        for (K key : forward.keySet()) {
+            update(key, (k, old) -> old == null ? null : Objects.requireNonNull(function.apply(k, old)), false);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (K key : forward.keySet()) {
+            remove(key); // per key through update(), so concurrent writers never see a half-cleared map
+        }
+    }
+
+    // ---------------------------------------------------------------- views
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es = entrySet;
+        return es != null ? es : (entrySet = new EntrySet());
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public int size() {
+            return forward.size();
+        }
+
+        @Override
+        public void clear() {
+            AbstractComputeRoutedMap.this.clear();
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            Iterator<Map.Entry<K, V>> it = forward.entrySet().iterator();
+            return new Iterator<>() {
+                Map.Entry<K, V> last;
+
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                public Map.Entry<K, V> next() {
+                    Map.Entry<K, V> e = last = it.next();
+                    return new AbstractMap.SimpleEntry<>(e) {
+                        @Override
+                        public V setValue(V value) {
+                            super.setValue(value);
+                            return put(e.getKey(), value);
+                        }
+                    };
+                }
+
+                public void remove() {
+                    if (last == null) {
+                        throw new IllegalStateException();
+                    }
+                    AbstractComputeRoutedMap.this.remove(last.getKey()); // by key, like ConcurrentHashMap's iterator
+                    last = null;
+                }
+            };
+        }
+    }
+}
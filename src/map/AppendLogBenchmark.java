@@ -0,0 +1,135 @@
+package map;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ConcurrentHashMapDemo's logs pattern under load: computeIfAbsent + synchronized (StringBuilder)
+ * vs KeyedAppendLog, 1..64 appending threads on TENANTS keys (default 1 = one hot tenant).
+ *
+ * While the appenders run, one consumer thread keeps draining every tenant - for the StringBuilder
+ * that is synchronized (sb) { copy; setLength(0) }, for the log a drain(). Reported: appends/second
+ * summed over all appenders (higher is better). Afterwards the log's drained count is checked
+ * against the appends, so a lost or duplicated event would show as an error.
+ *
+ * Run:  java map.AppendLogBenchmark [secondsPerRun] [tenants]
+ * Not a JMH harness: relative numbers on one machine only; the monitor's cost grows with the number of
+ * cores actually appending at the same time.
+ */
+public class AppendLogBenchmark {
+
+    interface Buffers {
+        void append(String tenant, String event);
+
+        /** Drains every tenant, returns the number of events taken out. */
+        long drainAll();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        int tenants = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        String[] keys = new String[tenants];
+        for (int i = 0; i < tenants; i++) {
+            keys[i] = "tenant-" + i;
+        }
+
+        System.out.printf("%-8s %22s %22s %8s%n", "threads", "synchronized SB /s", "KeyedAppendLog /s", "speedup");
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            double a = run(stringBuilders(), keys, threads, seconds, false);
+            double b = run(appendLog(), keys, threads, seconds, true);
+            System.out.printf("%-8d %22.0f %22.0f %7.2fx%n", threads, a, b, b / a);
+        }
+    }
+
+    static Buffers stringBuilders() {
+        ConcurrentHashMap<String, StringBuilder> logs = new ConcurrentHashMap<>();
+        return new Buffers() {
+            public void append(String tenant, String event) {
+                StringBuilder sb = logs.computeIfAbsent(tenant, k -> new StringBuilder());
+                synchronized (sb) {
+                    sb.append(event).append(" ");
+                }
+            }
+
+            public long drainAll() {
+                long events = 0;
+                for (StringBuilder sb : logs.values()) {
+                    String batch;
+                    synchronized (sb) {
+                        batch = sb.toString();
+                        sb.setLength(0);
+                    }
+                    for (int i = 0; i < batch.length(); i++) {
+                        if (batch.charAt(i) == ' ') {
+                            events++;
+                        }
+                    }
+                }
+                return events;
+            }
+        };
+    }
+
+    static Buffers appendLog() {
+        KeyedAppendLog<String, String> logs = new KeyedAppendLog<>();
+        return new Buffers() {
+            public void append(String tenant, String event) {
+                logs.append(tenant, event);
+            }
+
+            public long drainAll() {
+                return logs.drainAll((tenant, event) -> {}, Integer.MAX_VALUE);
+            }
+        };
+    }
+
+    static double run(Buffers buffers, String[] tenants, int threads, long seconds, boolean check)
+            throws InterruptedException {
+        LongAdder appends = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicBoolean stop = new AtomicBoolean();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            Thread worker = new Thread(() -> {
+                String event = Thread.currentThread().getName();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                long local = 0;
+                while ((local & 1023) != 0 || System.nanoTime() < deadline) {
+                    buffers.append(tenants[(int) ((offset + local) % tenants.length)], event);
+                    local++;
+                }
+                appends.add(local);
+                done.countDown();
+            });
+            worker.start();
+        }
+
+        long[] drained = new long[1];
+        Thread consumer = new Thread(() -> {
+            while (!stop.get()) {
+                drained[0] += buffers.drainAll();
+                Thread.onSpinWait();
+            }
+        });
+        consumer.start();
+        start.countDown();
+        done.await();
+        stop.set(true);
+        consumer.join();
+        drained[0] += buffers.drainAll();
+
+        if (check && drained[0] != appends.sum()) {
+            throw new IllegalStateException("drained " + drained[0] + " of " + appends.sum() + " events");
+        }
+        return appends.sum() / (double) seconds;
+    }
+}
@@ -0,0 +1,82 @@
+package map;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToLongFunction;
+
+/**
+ * ConcurrentMapBulkOps over a big ConcurrentHashMap<Long, Long>: parallelism threshold x thread count.
+ *
+ * For every ForkJoinPool size (1, 2, 4, ... up to the cores) and threshold (SEQUENTIAL down to 1)
+ * it times three operations, best of ROUNDS, in ms:
+ *  - sum      reduceValuesToLong(threshold, Long::longValue, 0, Long::sum) - primitive, no boxing
+ *  - boxed    mapReduceValues(threshold, v -> v, Long::sum) - same sum with a Long per step
+ *  - search   search(threshold, ...) for a key that isn't there, i.e. a full parallel scan
+ * Pick the threshold where the time stops improving at your thread count; smaller ones only add
+ * task overhead. ConcurrentHashMap caps the splits at 4 x the common pool's parallelism.
+ *
+ * Run:  java -Xmx8g map.BulkOpsBenchmark [entries]   (default 10M; 30M needs about 8 GB)
+ */
+public class BulkOpsBenchmark {
+
+    static final int ROUNDS = 5;
+    static final long[] THRESHOLDS = {ConcurrentMapBulkOps.SEQUENTIAL, 1_000_000, 100_000, 10_000, 1_000, 1};
+
+    public static void main(String[] args) {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        ConcurrentHashMap<Long, Long> map = new ConcurrentHashMap<>(2 * entries);
+        for (long i = 0; i < entries; i++) {
+            map.put(i, i);
+        }
+        long expected = (long) entries * (entries - 1) / 2;
+
+        List<Integer> poolSizes = new ArrayList<>();
+        for (int p = 1; p <= Runtime.getRuntime().availableProcessors(); p *= 2) {
+            poolSizes.add(p);
+        }
+        System.out.printf("%d entries, %d cores, common pool parallelism %d%n", entries,
+                Runtime.getRuntime().availableProcessors(), ForkJoinPool.getCommonPoolParallelism());
+        System.out.printf("%-8s %-12s %10s %10s %10s%n", "threads", "threshold", "sum ms", "boxed ms", "search ms");
+
+        for (int threads : poolSizes) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                for (long threshold : THRESHOLDS) {
+                    ConcurrentMapBulkOps<Long, Long> ops = ConcurrentMapBulkOps.of(map).withPool(pool).withThreshold(threshold);
+                    ToLongFunction<Long> value = Long::longValue;
+                    double sum = best(() -> check(ops.reduceValuesToLong(threshold, value, 0L, Long::sum), expected));
+                    double boxed = best(() -> check(ops.mapReduceValues(threshold, v -> v, Long::sum), expected));
+                    double search = best(() -> {
+                        Long found = ops.search(threshold, (k, v) -> k < 0 ? v : null);
+                        if (found != null) {
+                            throw new IllegalStateException("found " + found);
+                        }
+                    });
+                    System.out.printf("%-8d %-12s %10.1f %10.1f %10.1f%n", threads,
+                            threshold == ConcurrentMapBulkOps.SEQUENTIAL ? "SEQUENTIAL" : String.valueOf(threshold),
+                            sum, boxed, search);
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    static void check(long actual, long expected) {
+        if (actual != expected) {
+            throw new IllegalStateException("sum " + actual + " != " + expected);
+        }
+    }
+
+    static double best(Runnable operation) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e6;
+    }
+}
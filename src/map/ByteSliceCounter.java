@@ -0,0 +1,134 @@
+package map;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * byte-string -> long counter for ParallelWordCount, confined to one thread.
+ *
+ * A token is counted straight from the input bytes, without creating a String: the lookup compares
+ * them with the stored key bytes, and only a new key is copied - into one shared byte[] arena, not a
+ * byte[] per key. The slots are one long[] with three longs per slot (hash and length, arena offset,
+ * count), so a probe mostly touches one cache line instead of one per parallel array. Linear probing,
+ * at most 2/3 full; count 0 marks a free slot since every stored key counts >= 1.
+ */
+final class ByteSliceCounter {
+
+    // slot i = table[3i .. 3i+2]: (hash << 32 | length), arena offset, count
+    private long[] table;
+    private int mask;
+    private int size;
+    private byte[] arena = new byte[1 << 16];
+    private int arenaSize;
+
+    ByteSliceCounter() {
+        table = new long[3 << 12];
+        mask = (1 << 12) - 1;
+    }
+
+    /** Adds n to the key src[start, start + length); hash must be hash(src, start, length). */
+    void add(byte[] src, int start, int length, int hash, long n) {
+        long[] t = table;
+        long tag = (long) hash << 32 | length;
+        int i = IntObjectMap.mix(hash) & mask;
+        while (t[3 * i + 2] != 0) {
+            if (t[3 * i] == tag && sameBytes((int) t[3 * i + 1], src, start, length)) {
+                t[3 * i + 2] += n;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        insert(i, tag, src, start, length, n);
+    }
+
+    /** Adds every count of other to this counter. */
+    void addAll(ByteSliceCounter other) {
+        long[] t = other.table;
+        for (int i = 0; i < t.length; i += 3) {
+            if (t[i + 2] != 0) {
+                add(other.arena, (int) t[i + 1], (int) t[i], (int) (t[i] >>> 32), t[i + 2]);
+            }
+        }
+    }
+
+    /** Count of a key given as String (UTF-8 bytes), 0 if absent. */
+    long get(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytes, 0, bytes.length);
+        long tag = (long) hash << 32 | bytes.length;
+        for (int i = IntObjectMap.mix(hash) & mask; table[3 * i + 2] != 0; i = (i + 1) & mask) {
+            if (table[3 * i] == tag && sameBytes((int) table[3 * i + 1], bytes, 0, bytes.length)) {
+                return table[3 * i + 2];
+            }
+        }
+        return 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(String key, long count);
+    }
+
+    /** Decodes each key to a String; meant for results, not for the counting loop. */
+    void forEach(EntryConsumer action) {
+        for (int i = 0; i < table.length; i += 3) {
+            if (table[i + 2] != 0) {
+                action.accept(new String(arena, (int) table[i + 1], (int) table[i], StandardCharsets.UTF_8), table[i + 2]);
+            }
+        }
+    }
+
+    /** Same hash as computed incrementally by the tokenizer: h = 31 * h + b over the bytes. */
+    static int hash(byte[] src, int start, int length) {
+        int h = 0;
+        for (int i = start, end = start + length; i < end; i++) {
+            h = 31 * h + src[i];
+        }
+        return h;
+    }
+
+    private boolean sameBytes(int offset, byte[] src, int start, int length) {
+        return Arrays.equals(arena, offset, offset + length, src, start, start + length);
+    }
+
+    private void insert(int slot, long tag, byte[] src, int start, int length, long n) {
+        if (arenaSize + length > arena.length) {
+            long grown = Math.max(2L * arena.length, (long) arenaSize + length);
+            if (grown > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("more than 2 GB of distinct keys");
+            }
+            arena = Arrays.copyOf(arena, (int) grown);
+        }
+        System.arraycopy(src, start, arena, arenaSize, length);
+        table[3 * slot] = tag;
+        table[3 * slot + 1] = arenaSize;
+        table[3 * slot + 2] = n;
+        arenaSize += length;
+        if (++size * 3 > (mask + 1) * 2) {
+            rehash();
+        }
+    }
+
+    private void rehash() {
+        long[] old = table;
+        int capacity = 2 * (mask + 1);
+        if (3L * capacity > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("too many distinct keys");
+        }
+        table = new long[3 * capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < old.length; i += 3) {
+            if (old[i + 2] != 0) {
+                int j = IntObjectMap.mix((int) (old[i] >>> 32)) & mask;
+                while (table[3 * j + 2] != 0) {
+                    j = (j + 1) & mask;
+                }
+                System.arraycopy(old, i, table, 3 * j, 3);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package map;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Custom JDK Flight Recorder events for the caches in this package.
+ *
+ * They are written only while a recording with them enabled is running, e.g.
+ *   java -XX:StartFlightRecording:filename=cache.jfr,settings=profile ...
+ *   jfr print --events map.CacheEviction cache.jfr
+ * Otherwise {@code isEnabled()} is false and the JIT folds the whole block away.
+ */
+final class CacheEvents {
+
+    private CacheEvents() {
+    }
+
+    @Name("map.CacheEviction")
+    @Label("Cache Eviction")
+    @Category({"Collections", "Cache"})
+    @Description("An entry was removed by the cache itself (size/weight bound, TinyLFU rejection, expiry)")
+    @StackTrace(false)
+    static final class Eviction extends Event {
+        @Label("Cache")
+        String cache;
+
+        @Label("Key")
+        String key;
+
+        @Label("Cause")
+        String cause;
+    }
+
+    @Name("map.CacheSlowLoad")
+    @Label("Cache Slow Load")
+    @Category({"Collections", "Cache"})
+    @Description("A cache loader call that took longer than the threshold")
+    @Threshold("20 ms") // default, can be overridden in the recording settings
+    static final class SlowLoad extends Event {
+        @Label("Cache")
+        String cache;
+
+        @Label("Key")
+        String key;
+
+        @Label("Success")
+        boolean success;
+    }
+
+    static void eviction(Object cache, Object key, String cause) {
+        Eviction event = new Eviction();
+        if (event.isEnabled()) {
+            event.cache = cache.getClass().getSimpleName();
+            event.key = String.valueOf(key);
+            event.cause = cause;
+            event.commit();
+        }
+    }
+}
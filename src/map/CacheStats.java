@@ -0,0 +1,102 @@
+package map;
+
+/** Immutable snapshot of a cache's counters (see StatsCounter). */
+public final class CacheStats {
+
+    static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0, 0, 0, new long[64]);
+
+    private final long hits;
+    private final long misses;
+    private final long puts;
+    private final long evictions;
+    private final long loadSuccesses;
+    private final long loadFailures;
+    private final long totalLoadNanos;
+    private final long[] loadTimeHistogram; // log2 buckets, see StatsCounter.Striped
+
+    CacheStats(long hits, long misses, long puts, long evictions, long loadSuccesses,
+               long loadFailures, long totalLoadNanos, long[] loadTimeHistogram) {
+        this.hits = hits;
+        this.misses = misses;
+        this.puts = puts;
+        this.evictions = evictions;
+        this.loadSuccesses = loadSuccesses;
+        this.loadFailures = loadFailures;
+        this.totalLoadNanos = totalLoadNanos;
+        this.loadTimeHistogram = loadTimeHistogram;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getPuts() {
+        return puts;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getLoadCount() {
+        return loadSuccesses + loadFailures;
+    }
+
+    public long getLoadFailures() {
+        return loadFailures;
+    }
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 1.0 : (double) hits / requests;
+    }
+
+    public double getAverageLoadMillis() {
+        long loads = getLoadCount();
+        return loads == 0 ? 0.0 : totalLoadNanos / 1e6 / loads;
+    }
+
+    /**
+     * Upper bound of the load time below which {@code percentile} (0..100) of loads finished.
+     * Resolution is a power of two, e.g. "under 8.4ms" rather than "7.9ms".
+     */
+    public double getLoadTimeMillisAtPercentile(double percentile) {
+        long loads = getLoadCount();
+        if (loads == 0) {
+            return 0.0;
+        }
+        long target = (long) Math.ceil(loads * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < loadTimeHistogram.length; i++) {
+            seen += loadTimeHistogram[i];
+            if (seen >= Math.max(1, target)) {
+                return (i == 63 ? Long.MAX_VALUE : 1L << i) / 1e6;
+            }
+        }
+        return Long.MAX_VALUE / 1e6;
+    }
+
+    /** Counts per log2 bucket: index i = loads that took less than 2^i ns (and at least 2^(i-1)). */
+    public long[] getLoadTimeHistogram() {
+        return loadTimeHistogram.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "hits=" + hits +
+                ", misses=" + misses +
+                ", hitRate=" + String.format("%.3f", getHitRate()) +
+                ", puts=" + puts +
+                ", evictions=" + evictions +
+                ", loads=" + getLoadCount() +
+                ", loadFailures=" + loadFailures +
+                ", avgLoadMs=" + String.format("%.3f", getAverageLoadMillis()) +
+                ", p99LoadMs<=" + String.format("%.3f", getLoadTimeMillisAtPercentile(99)) +
+                '}';
+    }
+}
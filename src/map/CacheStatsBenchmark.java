@@ -0,0 +1,85 @@
+package map;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Micro benchmark: what does recordStats() cost? Same workload (90% get / 10% put, skewed keys)
+ * with statistics disabled and enabled, for LRUCache (plain counters, it is single-threaded) and
+ * ConcurrentLRUCache (StatsCounter.PerThread: plain per-thread counters, no atomic per get()).
+ *
+ * Run:  java map.CacheStatsBenchmark [rounds]
+ * Rounds alternate disabled/enabled so JIT warm-up and noise hit both sides; the best round of
+ * each is reported. Target: overhead under 5%.
+ * Add -XX:StartFlightRecording to also see the cost of the JFR eviction events.
+ */
+public class CacheStatsBenchmark {
+
+    static final int CAPACITY = 10_000;
+    static final int OPS = 5_000_000;
+
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        Integer[] keys = keys(1 << 20);
+
+        long lruOff = Long.MAX_VALUE, lruOn = Long.MAX_VALUE;
+        long concurrentOff = Long.MAX_VALUE, concurrentOn = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            lruOff = Math.min(lruOff, runLru(new LRUCache<>(CAPACITY), keys));
+            lruOn = Math.min(lruOn, runLru(new LRUCache<Integer, Integer>(CAPACITY).recordStats(), keys));
+            concurrentOff = Math.min(concurrentOff, runConcurrent(new ConcurrentLRUCache<>(CAPACITY), keys));
+            concurrentOn = Math.min(concurrentOn, runConcurrent(new ConcurrentLRUCache<Integer, Integer>(CAPACITY).recordStats(), keys));
+        }
+
+        System.out.printf("%-20s %14s %14s %10s%n", "cache", "disabled ns/op", "enabled ns/op", "overhead");
+        print("LRUCache", lruOff, lruOn);
+        print("ConcurrentLRUCache", concurrentOff, concurrentOn);
+
+        LRUCache<Integer, Integer> sample = new LRUCache<Integer, Integer>(CAPACITY).recordStats();
+        runLru(sample, keys);
+        System.out.println("LRUCache           " + sample.stats());
+        ConcurrentLRUCache<Integer, Integer> concurrentSample = new ConcurrentLRUCache<Integer, Integer>(CAPACITY).recordStats();
+        runConcurrent(concurrentSample, keys);
+        System.out.println("ConcurrentLRUCache " + concurrentSample.stats());
+    }
+
+    static void print(String name, long off, long on) {
+        System.out.printf("%-20s %14.2f %14.2f %9.1f%%%n", name,
+                off / (double) OPS, on / (double) OPS, (on - off) * 100.0 / off);
+    }
+
+    static long runLru(LRUCache<Integer, Integer> cache, Integer[] keys) {
+        long start = System.nanoTime();
+        for (int i = 0; i < OPS; i++) {
+            Integer key = keys[i & (keys.length - 1)];
+            if (i % 10 == 0) {
+                cache.put(key, key);
+            } else {
+                cache.get(key);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    static long runConcurrent(ConcurrentLRUCache<Integer, Integer> cache, Integer[] keys) {
+        long start = System.nanoTime();
+        for (int i = 0; i < OPS; i++) {
+            Integer key = keys[i & (keys.length - 1)];
+            if (i % 10 == 0) {
+                cache.put(key, key);
+            } else {
+                cache.get(key);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    static Integer[] keys(int n) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Integer[] keys = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            double u = random.nextDouble();
+            keys[i] = (int) (4 * CAPACITY * u * u * u);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,382 @@
+package map;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Insertion-ordered map with the CPython dict layout, a smaller and faster LinkedHashMap.
+ *
+ * LinkedHashMap = HashMap.Node (hash, key, value, next) + before/after pointers: a 40 byte object per
+ * entry, and iterating follows pointers all over the heap. Here:
+ *  - entries are appended to dense parallel arrays (hashes[], keys[], values[]) in insertion order;
+ *  - a sparse open-addressing int[] index (linear probing, at most 2/3 full) maps hash -> position;
+ *  - remove() leaves a tombstone in both (entry key = TOMBSTONE, index slot = DUMMY), so positions
+ *    and therefore the order never move;
+ *  - tombstones are compacted away when the dense arrays are full, or when more than half the
+ *    entries are dead: live entries are copied down in order and the index is rebuilt;
+ *  - iteration is a sequential scan of the dense arrays.
+ * put() of an existing key keeps its position, as in LinkedHashMap. Null keys and values are allowed.
+ */
+public class CompactOrderedMap<K, V> extends AbstractMap<K, V> {
+
+    private static final Object TOMBSTONE = new Object();
+    private static final int EMPTY = -1;
+    private static final int DUMMY = -2;
+    private static final int MIN_CAPACITY = 8;
+
+    private int[] index;       // EMPTY, DUMMY or a position in the dense arrays
+    private int[] hashes;
+    private Object[] keys;     // TOMBSTONE for removed entries
+    private Object[] values;
+    private int used;          // dense slots handed out, live + tombstones
+    private int size;
+    private int modCount;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    public CompactOrderedMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public CompactOrderedMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expectedSize=" + expectedSize);
+        }
+        allocate(Math.max(MIN_CAPACITY, expectedSize));
+    }
+
+    // ---------------------------------------------------------------- Map
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return position(key) >= 0;
+    }
+
+    @Override
+    public V get(Object key) {
+        int pos = position(key);
+        return pos >= 0 ? value(pos) : null;
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        int pos = position(key);
+        return pos >= 0 ? value(pos) : defaultValue;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        int pos = position(key);
+        if (pos >= 0) {
+            V previous = value(pos);
+            values[pos] = value;
+            return previous;
+        }
+        append(spread(key), key, value);
+        return null;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        int pos = position(key);
+        if (pos >= 0) {
+            V current = value(pos);
+            if (current == null) {
+                values[pos] = value; // mapped to null counts as absent, like HashMap
+            }
+            return current;
+        }
+        append(spread(key), key, value);
+        return null;
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        int pos = position(key);
+        if (pos < 0) {
+            return null;
+        }
+        V previous = value(pos);
+        values[pos] = value;
+        return previous;
+    }
+
+    @Override
+    public V remove(Object key) {
+        int h = spread(key);
+        int slot = slot(key, h);
+        if (slot < 0) {
+            return null;
+        }
+        int pos = index[slot];
+        V previous = value(pos);
+        index[slot] = DUMMY;
+        kill(pos);
+        if (used - size > size && used - size > MIN_CAPACITY) {
+            rebuild(keys.length); // more than half dead: compact
+        }
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        if (used > 0) {
+            Arrays.fill(index, EMPTY);
+            Arrays.fill(keys, 0, used, null);
+            Arrays.fill(values, 0, used, null);
+            used = 0;
+            size = 0;
+            modCount++;
+        }
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        int expectedModCount = modCount;
+        Object[] keys = this.keys;
+        for (int pos = 0; pos < used; pos++) {
+            if (keys[pos] != TOMBSTONE) {
+                action.accept(key(pos), value(pos));
+            }
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es = entrySet;
+        return es != null ? es : (entrySet = new EntrySet());
+    }
+
+    // ---------------------------------------------------------------- layout
+
+    static int spread(Object key) {
+        int h = Objects.hashCode(key) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int position(Object key) {
+        int slot = slot(key, spread(key));
+        return slot < 0 ? -1 : index[slot];
+    }
+
+    // index slot pointing at key's entry, or -1
+    private int slot(Object key, int h) {
+        int[] index = this.index;
+        int mask = index.length - 1;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            int pos = index[i];
+            if (pos == EMPTY) {
+                return -1;
+            }
+            if (pos >= 0 && hashes[pos] == h && Objects.equals(keys[pos], key)) {
+                return i;
+            }
+        }
+    }
+
+    // key is known to be absent
+    private void append(int h, Object key, Object value) {
+        if (used == keys.length) {
+            rebuild(Math.max(MIN_CAPACITY, size * 2)); // drops tombstones, grows if needed
+        }
+        int pos = used++;
+        hashes[pos] = h;
+        keys[pos] = key;
+        values[pos] = value;
+        link(h, pos);
+        size++;
+        modCount++;
+    }
+
+    private void link(int h, int pos) {
+        int mask = index.length - 1;
+        int i = h & mask;
+        while (index[i] >= 0) { // EMPTY and DUMMY slots can both be reused
+            i = (i + 1) & mask;
+        }
+        index[i] = pos;
+    }
+
+    private void kill(int pos) {
+        keys[pos] = TOMBSTONE;
+        values[pos] = null;
+        size--;
+        modCount++;
+    }
+
+    // Copies the live entries (in order) into arrays of the given capacity and rebuilds the index.
+    private void rebuild(int capacity) {
+        int[] oldHashes = hashes;
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        int oldUsed = used;
+        allocate(capacity);
+        for (int pos = 0; pos < oldUsed; pos++) {
+            if (oldKeys[pos] != TOMBSTONE) {
+                int to = used++;
+                hashes[to] = oldHashes[pos];
+                keys[to] = oldKeys[pos];
+                values[to] = oldValues[pos];
+                link(hashes[to], to);
+            }
+        }
+        modCount++;
+    }
+
+    private void allocate(int capacity) {
+        hashes = new int[capacity];
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        // index at most 2/3 full, as in CPython
+        int indexLength = Integer.highestOneBit(Math.max(2, capacity + (capacity >> 1)) - 1) << 1;
+        index = new int[indexLength];
+        Arrays.fill(index, EMPTY);
+        used = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private K key(int pos) {
+        return (K) keys[pos];
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(int pos) {
+        return (V) values[pos];
+    }
+
+    // ---------------------------------------------------------------- iteration
+
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            CompactOrderedMap.this.clear();
+        }
+    }
+
+    /** Sequential scan; Iterator.remove() only leaves a tombstone, compaction waits for the next write. */
+    final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private int next = skipDead(0);
+        private int lastReturned = -1;
+        private int expectedModCount = modCount;
+
+        private int skipDead(int pos) {
+            while (pos < used && keys[pos] == TOMBSTONE) {
+                pos++;
+            }
+            return pos;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < used;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= used) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            next = skipDead(next + 1);
+            return new Entry(lastReturned);
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            index[slot(keys[lastReturned], hashes[lastReturned])] = DUMMY;
+            kill(lastReturned);
+            lastReturned = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * Reads and writes through to the dense arrays until the map is compacted or rebuilt; after that
+     * getValue() returns the value seen last and setValue() throws.
+     */
+    final class Entry implements Map.Entry<K, V> {
+        private final int pos;
+        private final K key;
+        private final int expectedModCount = modCount;
+        private V value;
+
+        Entry(int pos) {
+            this.pos = pos;
+            this.key = key(pos);
+            this.value = value(pos);
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            if (modCount == expectedModCount) {
+                value = value(pos);
+            }
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException("entry is stale: the map was structurally modified");
+            }
+            V previous = value(pos);
+            values[pos] = value;
+            this.value = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Map.Entry<?, ?> e && Objects.equals(key, e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package map;
+
+import java.util.Objects;
+
+/**
+ * Base class for immutable keys made of several fields (e.g. Student = id + name).
+ *
+ * Objects.hash(id, name) looks harmless but allocates on every call: a varargs Object[] plus an
+ * Integer for id. A HashMap calls hashCode() on every get()/put(), so a map keyed by such objects
+ * allocates on every lookup. Here:
+ *  - the hash is computed once, in the constructor, with the allocation-free hash(...) helpers below
+ *    (they give the same values as Objects.hash, so iteration order doesn't change);
+ *  - equals() rejects on the cached hash first, then subclasses compare primitive fields before the
+ *    (more expensive) references in sameFields();
+ *  - {@link Probe} is a reusable, mutable lookup key: map.get(probe.set(101, "Alice")) finds the entry
+ *    stored under new Student(101, "Alice") without creating a key object.
+ */
+abstract class CompositeKey {
+
+    private final int hash;
+
+    protected CompositeKey(int hash) {
+        this.hash = hash;
+    }
+
+    @Override
+    public final int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof CompositeKey other) {
+            return hash == other.hash && sameFields(other);
+        }
+        return o instanceof Probe probe && probe.equals(this); // keep equals() symmetric
+    }
+
+    /** Called only when the hashes match: compare primitive fields first, then references. */
+    protected abstract boolean sameFields(CompositeKey other);
+
+    /**
+     * A flyweight key for lookups only (get, containsKey, getOrDefault, remove). Set it, look up,
+     * set it again - never put() it into a map, and don't share one between threads.
+     */
+    abstract static class Probe {
+        private int hash;
+
+        /** Subclasses call this from their set(...) method after updating their fields. */
+        protected final void rehash(int hash) {
+            this.hash = hash;
+        }
+
+        @Override
+        public final int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public final boolean equals(Object o) {
+            return o instanceof CompositeKey key && key.hash == hash && matches(key);
+        }
+
+        /** Called only when the hashes match: does key have the fields this probe is set to? */
+        protected abstract boolean matches(CompositeKey key);
+    }
+
+    // ---------------------------------------------------------------- hashing, same as Objects.hash(a, b)
+
+    static int hash(int a, Object b) {
+        return 31 * (31 + a) + Objects.hashCode(b);
+    }
+
+    static int hash(long a, Object b) {
+        return 31 * (31 + Long.hashCode(a)) + Objects.hashCode(b);
+    }
+
+    static int hash(int a, int b) {
+        return 31 * (31 + a) + b;
+    }
+
+    static int hash(Object a, Object b) {
+        return 31 * (31 + Objects.hashCode(a)) + Objects.hashCode(b);
+    }
+
+    static int hash(int a, int b, Object c) {
+        return 31 * hash(a, b) + Objects.hashCode(c);
+    }
+}
@@ -0,0 +1,115 @@
+package map;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * key -> long counter for hot keys, the contention-free replacement for
+ * counterMap.compute("counter", (k, v) -> v == null ? 1 : v + 1) in ConcurrentHashMapDemo.
+ *
+ *  - compute()/merge() lock the key's bin for every increment and box a new Integer/Long: all
+ *    threads hitting one key run one after another through that lock.
+ *  - here each key maps to a LongAdder. After the first increment the key is only looked up (get(),
+ *    no lock) and the adder's cell for the current thread is CASed; contended threads get their own
+ *    cells, so increments of one key don't serialize and nothing is allocated per increment (the
+ *    adder allocates its cells once, when contention is first seen).
+ *  - reads sum the cells: sum(key) is O(cells) and, like LongAdder.sum(), not an atomic snapshot
+ *    while increments are running.
+ *  - sumThenReset(key) swaps every cell to 0 (getAndSet), so an increment is counted either in the
+ *    returned sum or in the next one - never lost. remove(key) is different: a thread that already
+ *    looked up the adder may still add to it after it left the map; use sumThenReset to drain.
+ * Null keys are rejected, as in ConcurrentHashMap.
+ */
+public class ConcurrentCounterMap<K> {
+
+    private final ConcurrentHashMap<K, LongAdder> counters;
+
+    public ConcurrentCounterMap() {
+        this(16);
+    }
+
+    public ConcurrentCounterMap(int initialCapacity) {
+        counters = new ConcurrentHashMap<>(initialCapacity);
+    }
+
+    public void increment(K key) {
+        adder(key).increment();
+    }
+
+    public void decrement(K key) {
+        adder(key).decrement();
+    }
+
+    public void add(K key, long n) {
+        adder(key).add(n);
+    }
+
+    /** Current count of key, 0 if it was never counted. */
+    public long sum(K key) {
+        LongAdder adder = counters.get(key);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /** Returns the count of key and resets it to 0; the key stays, so its adder is reused. */
+    public long sumThenReset(K key) {
+        LongAdder adder = counters.get(key);
+        return adder == null ? 0 : adder.sumThenReset();
+    }
+
+    /** Removes key and returns its last count (see the class comment for racing increments). */
+    public long remove(K key) {
+        LongAdder adder = counters.remove(key);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /** Copy of all counts; each count is read on its own, so the map is not one point in time. */
+    public Map<K, Long> snapshot() {
+        Map<K, Long> copy = new HashMap<>(Math.max(16, 2 * counters.size()));
+        counters.forEach((key, adder) -> copy.put(key, adder.sum()));
+        return copy;
+    }
+
+    /** snapshot() that also resets every count, e.g. to report per-interval counts. */
+    public Map<K, Long> snapshotThenReset() {
+        Map<K, Long> copy = new HashMap<>(Math.max(16, 2 * counters.size()));
+        counters.forEach((key, adder) -> copy.put(key, adder.sumThenReset()));
+        return copy;
+    }
+
+    /** Sum over all keys. */
+    public long total() {
+        long total = 0;
+        for (LongAdder adder : counters.values()) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    public Set<K> keys() {
+        return Collections.unmodifiableSet(counters.keySet());
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    public void clear() {
+        counters.clear();
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    // get() first: for an existing key that is a lock-free read; computeIfAbsent() locks the bin even
+    // when the key is present. The lambda captures nothing, so no allocation either way.
+    private LongAdder adder(K key) {
+        LongAdder adder = counters.get(key);
+        return adder != null ? adder : counters.computeIfAbsent(key, k -> new LongAdder());
+    }
+}
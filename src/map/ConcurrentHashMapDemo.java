@@ -80,6 +80,24 @@ public class ConcurrentHashMapDemo {
         System.out.println("counterMap after concurrent increments: " + counterMap);
         // Expected "counter" ≈ 2000 (no lost updates due to compute() atomicity).
 
+        // Same count without the bin lock and the new Integer per increment: one LongAdder per key
+        // (ConcurrentCounterMap; see CounterMapBenchmark for compute/merge vs adders at 1..128 threads)
+        ConcurrentCounterMap<String> hotCounters = new ConcurrentCounterMap<>();
+        Runnable adderTask = () -> {
+            for (int i = 0; i < 1000; i++) {
+                hotCounters.increment("counter");
+            }
+        };
+        Thread a1 = new Thread(adderTask);
+        Thread a2 = new Thread(adderTask);
+        a1.start();
+        a2.start();
+        a1.join();
+        a2.join();
+        System.out.println("hotCounters after concurrent increments: " + hotCounters);  // {counter=2000}
+        System.out.println("sumThenReset: " + hotCounters.sumThenReset("counter")
+                + ", now " + hotCounters.sum("counter"));                                    // 2000, now 0
+
         // 6) putIfAbsent() – atomic "insert only if key not present"
         chm.clear();
         chm.put("X", 10);
@@ -117,6 +135,15 @@ public class ConcurrentHashMapDemo {
         System.out.println("Iterating using forEach:");
         chm.forEach((key, val) -> System.out.println(key + " -> " + val));
 
+        // Parallel bulk ops: the first argument is the parallelism threshold (Long.MAX_VALUE = sequential).
+        // ConcurrentMapBulkOps adds a default threshold and an own ForkJoinPool (see BulkOpsBenchmark)
+        ConcurrentHashMap<String, Integer> scores = new ConcurrentHashMap<>(Map.of("P", 5, "Q", 15, "R", 25));
+        ConcurrentMapBulkOps<String, Integer> bulk = ConcurrentMapBulkOps.of(scores).withThreshold(1);
+        long total = bulk.sumValues(Integer::longValue);                        // 45, no boxing per entry
+        String big = bulk.search((key, val) -> val > 10 ? key : null);          // "Q" or "R"
+        Integer max = bulk.mapReduce((key, val) -> val, Math::max);             // 25
+        System.out.println("bulk: total=" + total + " search=" + big + " max=" + max);
+
         // 10) Weakly consistent iteration
         /**
          * - Iterators/traversals of ConcurrentHashMap are "weakly consistent":
@@ -165,6 +192,17 @@ public class ConcurrentHashMapDemo {
         System.out.println("logs map: " + logs);
         System.out.println("logs.get(\"threadLogs\") contents: " + logs.get("threadLogs"));
 
+        // Same per-key buffer without the monitor: KeyedAppendLog claims a slot with one atomic add,
+        // and one consumer drains a batch per key (see AppendLogBenchmark)
+        KeyedAppendLog<String, String> events = new KeyedAppendLog<>();
+        Thread e1 = new Thread(() -> events.append("threadLogs", Thread.currentThread().getName()), "T-1");
+        Thread e2 = new Thread(() -> events.append("threadLogs", Thread.currentThread().getName()), "T-2");
+        e1.start();
+        e2.start();
+        e1.join();
+        e2.join();
+        System.out.println("events.drain(\"threadLogs\"): " + events.drain("threadLogs")); // [T-1, T-2] in either order
+
         // 12) merge() – combine values atomically
         /**
          * merge(key, value, remappingFunction) is useful to aggregate counts or merge collections.
@@ -180,6 +218,8 @@ public class ConcurrentHashMapDemo {
         }
 
         System.out.println("wordCount using merge(): " + wordCount);
+        // For big inputs (multi-GB logs) don't merge every word into one shared map: ParallelWordCount
+        // memory-maps the file, counts per thread without locks and merges the per-thread counts once.
 
         // 13) size and isEmpty under concurrency (approximate cost)
         /**
@@ -201,7 +241,10 @@ public class ConcurrentHashMapDemo {
          *
          * Do NOT use ConcurrentHashMap when:
          *  - You rely on null keys/values (use HashMap instead).
-         *  - You need strict iteration snapshot (consider copying into an immutable map).
+         *  - You need strict iteration snapshot (consider copying into an immutable map, or for big
+         *    maps ConcurrentTrieMap: readOnlySnapshot() is O(1), see TrieSnapshotBenchmark).
+         *  - The map must survive a restart: DurableConcurrentMap logs every write, with group
+         *    commit so concurrent writers share fsyncs (see DurableMapBenchmark).
          */
 
     }
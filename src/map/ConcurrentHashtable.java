@@ -0,0 +1,217 @@
+package map;
+
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Drop-in Hashtable (is-a Hashtable, so fields and parameters typed Hashtable keep compiling) whose
+ * data lives in a ConcurrentHashMap instead of behind Hashtable's single monitor.
+ *
+ * What stays the same as Hashtable:
+ *  - null keys and null values throw NullPointerException (ConcurrentHashMap rejects them too).
+ *  - keys() / elements() Enumerations, contains(value) - and like Hashtable's they are not fail-fast.
+ *  - every single operation is atomic: get/put/remove, putIfAbsent, replace, compute*, merge
+ *    (ConcurrentHashMap locks only the bin of the key - CAS for an empty bin - not the whole table).
+ * What is different:
+ *  - synchronized (table) { ... } in client code no longer excludes other writers, as no method
+ *    takes the monitor anymore. Check-then-act blocks must become compute()/merge()/putIfAbsent().
+ *  - putAll(), clear(), equals() and iteration are per key (weakly consistent), not one snapshot.
+ *  - keySet()/entrySet()/values() iterators are weakly consistent instead of fail-fast: modifying the
+ *    table while iterating never throws ConcurrentModificationException.
+ * The inherited Hashtable bucket array is allocated once with capacity 1 and never used.
+ */
+public class ConcurrentHashtable<K, V> extends Hashtable<K, V> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ConcurrentHashMap<K, V> map;
+
+    public ConcurrentHashtable() {
+        this(16);
+    }
+
+    public ConcurrentHashtable(int initialCapacity) {
+        super(1);
+        map = new ConcurrentHashMap<>(initialCapacity);
+    }
+
+    /**
+     * Hashtable's constructor. The load factor is checked like Hashtable does and otherwise ignored:
+     * ConcurrentHashMap resizes at 0.75 regardless.
+     */
+    public ConcurrentHashtable(int initialCapacity, float loadFactor) {
+        this(initialCapacity);
+        if (!(loadFactor > 0)) { // also rejects NaN
+            throw new IllegalArgumentException("Illegal Load: " + loadFactor);
+        }
+    }
+
+    public ConcurrentHashtable(Map<? extends K, ? extends V> m) {
+        this(Math.max(2 * m.size(), 16));
+        map.putAll(m);
+    }
+
+    // Overriding drops the synchronized modifier of Hashtable's methods: none of these take the monitor.
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public Enumeration<K> keys() {
+        return map.keys();
+    }
+
+    @Override
+    public Enumeration<V> elements() {
+        return map.elements();
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return map.contains(value);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return map.containsValue(value);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public V get(Object key) {
+        return map.get(key);
+    }
+
+    @Override
+    protected void rehash() {
+        // ConcurrentHashMap resizes itself
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return map.put(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return map.remove(key);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> t) {
+        map.putAll(t);
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public Object clone() {
+        return new ConcurrentHashtable<>(map);
+    }
+
+    @Override
+    public String toString() {
+        return map.toString();
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return map.keySet();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return map.entrySet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return map.values();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || map.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return map.hashCode();
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        return map.getOrDefault(key, defaultValue);
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        map.forEach(action);
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        map.replaceAll(function);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return map.putIfAbsent(key, value);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        return map.remove(key, value);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        return map.replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        return map.replace(key, value);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        return map.computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return map.computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return map.compute(key, remappingFunction);
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        return map.merge(key, value, remappingFunction);
+    }
+}
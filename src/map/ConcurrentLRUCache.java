@@ -0,0 +1,409 @@
+package map;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe LRU cache with the same capacity contract as {@link LRUCache}
+ * (evict the least recently used entry once {@code size() > capacity}).
+ *
+ * Why not Collections.synchronizedMap(new LRUCache<>(n))?
+ *  - An access-ordered LinkedHashMap relinks its list on every get(), so every read is a write.
+ *  - A synchronized wrapper therefore serializes readers behind one monitor (~1 core of throughput).
+ *
+ * How this one works:
+ *  - Entries live in a ConcurrentHashMap, so get()/put() never take a global lock.
+ *  - The LRU order is a doubly linked list that is ONLY touched under {@code evictionLock}.
+ *  - Reads record "this node was accessed" into a striped, lossy ring buffer (one stripe per thread
+ *    hash) instead of relinking the list. Inserts/removes go into a write queue.
+ *  - The buffers are replayed against the list in batches by whichever thread wins {@code tryLock()}
+ *    ("maintenance"). Readers never block: if the lock is busy or a stripe is full, the access is
+ *    simply dropped - the LRU order becomes approximate, the capacity bound does not.
+ *  - Optional statistics (recordStats()) are counted per thread (StatsCounter.PerThread), so
+ *    counting hits doesn't bring the contention back.
+ */
+public class ConcurrentLRUCache<K, V> {
+
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+    static final int READ_BUFFER_SIZE = 16;                      // slots per stripe (power of two)
+    static final int READ_BUFFER_THRESHOLD = READ_BUFFER_SIZE / 2; // drain once a stripe is half full
+    static final int READ_BUFFER_STRIPES = ceilingPowerOfTwo(4 * NCPU);
+    static final int WRITE_BUFFER_MAX = 128;
+
+    final int capacity;
+    final ConcurrentHashMap<K, Node<K, V>> data;
+    final ReadBuffer<K, V>[] readBuffers;
+    final ConcurrentLinkedQueue<Runnable> writeBuffer = new ConcurrentLinkedQueue<>();
+    final AtomicInteger pendingWrites = new AtomicInteger();
+    final ReentrantLock evictionLock = new ReentrantLock();
+
+    StatsCounter stats = StatsCounter.DISABLED;
+
+    // Access-order list: head = least recently used, tail = most recently used. Guarded by evictionLock.
+    Node<K, V> head;
+    Node<K, V> tail;
+
+    public ConcurrentLRUCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.data = new ConcurrentHashMap<>(Math.min(capacity, 1 << 16));
+        this.readBuffers = newReadBuffers(READ_BUFFER_STRIPES);
+        for (int i = 0; i < readBuffers.length; i++) {
+            readBuffers[i] = new ReadBuffer<>();
+        }
+    }
+
+    /**
+     * Same hook as {@link java.util.LinkedHashMap#removeEldestEntry}: called during maintenance with
+     * the least recently used entry; return true to evict it. Must not modify the cache itself.
+     */
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > capacity;
+    }
+
+    /** Starts counting hits/misses/puts/evictions; call before sharing the cache between threads. */
+    public ConcurrentLRUCache<K, V> recordStats() {
+        if (stats == StatsCounter.DISABLED) {
+            stats = new StatsCounter.PerThread();
+        }
+        return this;
+    }
+
+    public CacheStats stats() {
+        return stats.snapshot();
+    }
+
+    public V get(Object key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            stats.recordMiss();
+            return null;
+        }
+        stats.recordHit();
+        afterRead(node);
+        return node.value;
+    }
+
+    public V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        stats.recordPut();
+        for (;;) {
+            Node<K, V> prior = data.get(key);
+            if (prior == null) {
+                Node<K, V> node = new Node<>(key, value);
+                prior = data.putIfAbsent(key, node);
+                if (prior == null) {
+                    afterWrite(new AddTask(node));
+                    return null;
+                }
+            }
+            V old;
+            synchronized (prior) {
+                if (!prior.isAlive()) {
+                    continue; // removed concurrently -> retry against the map
+                }
+                old = prior.value;
+                prior.value = value;
+            }
+            afterRead(prior); // an update counts as an access (like LinkedHashMap.put)
+            return old;
+        }
+    }
+
+    public V remove(Object key) {
+        Node<K, V> node = data.remove(key);
+        if (node == null) {
+            return null;
+        }
+        V old;
+        synchronized (node) {
+            old = node.value;
+            node.retire();
+        }
+        afterWrite(new RemoveTask(node));
+        return old;
+    }
+
+    public boolean containsKey(Object key) {
+        return data.containsKey(key);
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    public boolean isEmpty() {
+        return data.isEmpty();
+    }
+
+    public void clear() {
+        evictionLock.lock();
+        try {
+            for (K key : data.keySet()) {
+                remove(key);
+            }
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /** Forces all buffered reads/writes to be applied (eviction included). Handy for tests & demos. */
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        // Snapshot in LRU -> MRU order after applying pending buffers (same print order as LRUCache).
+        StringBuilder sb = new StringBuilder("{");
+        evictionLock.lock();
+        try {
+            maintenance();
+            for (Node<K, V> n = head; n != null; n = n.next) {
+                sb.append(n.key).append('=').append(n.value);
+                if (n.next != null) sb.append(", ");
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+        return sb.append('}').toString();
+    }
+
+    // ---------------------------------------------------------------- buffering
+
+    void afterRead(Node<K, V> node) {
+        ReadBuffer<K, V> buffer = readBuffers[stripe()];
+        int pending = buffer.offer(node);
+        if (pending >= READ_BUFFER_THRESHOLD) {
+            tryToDrain();
+        }
+    }
+
+    void afterWrite(Runnable task) {
+        writeBuffer.add(task);
+        if (pendingWrites.incrementAndGet() < WRITE_BUFFER_MAX) {
+            // Usual case: drain if nobody else is; otherwise the current lock holder (or the next
+            // write) picks our task up.
+            tryToDrain();
+            return;
+        }
+        // Too many writes are waiting: block, so the size bound can't drift more than
+        // WRITE_BUFFER_MAX entries past capacity. Reads never do this.
+        evictionLock.lock();
+        try {
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    void tryToDrain() {
+        if (evictionLock.tryLock()) {
+            try {
+                maintenance();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    // Guarded by evictionLock.
+    void maintenance() {
+        for (ReadBuffer<K, V> buffer : readBuffers) {
+            buffer.drainTo(this);
+        }
+        Runnable task;
+        while ((task = writeBuffer.poll()) != null) {
+            pendingWrites.decrementAndGet();
+            task.run();
+        }
+        evict();
+    }
+
+    // Guarded by evictionLock.
+    void evict() {
+        while (head != null && removeEldestEntry(head)) {
+            Node<K, V> victim = head;
+            unlink(victim);
+            if (data.remove(victim.key, victim)) {
+                synchronized (victim) {
+                    victim.retire();
+                }
+                stats.recordEviction();
+                CacheEvents.eviction(this, victim.key, "SIZE");
+            }
+        }
+    }
+
+    // Guarded by evictionLock.
+    void onAccess(Node<K, V> node) {
+        if (node.isAlive() && node.linked && node != tail) {
+            unlink(node);
+            linkLast(node);
+        }
+    }
+
+    void linkLast(Node<K, V> node) {
+        node.prev = tail;
+        node.next = null;
+        if (tail == null) {
+            head = node;
+        } else {
+            tail.next = node;
+        }
+        tail = node;
+        node.linked = true;
+    }
+
+    void unlink(Node<K, V> node) {
+        if (!node.linked) {
+            return;
+        }
+        Node<K, V> prev = node.prev, next = node.next;
+        if (prev == null) head = next; else prev.next = next;
+        if (next == null) tail = prev; else next.prev = prev;
+        node.prev = node.next = null;
+        node.linked = false;
+    }
+
+    static int stripe() {
+        long id = Thread.currentThread().threadId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (READ_BUFFER_STRIPES - 1);
+    }
+
+    static int ceilingPowerOfTwo(int x) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(x - 1));
+    }
+
+    @SuppressWarnings("unchecked") // generic array creation; the array never escapes as ReadBuffer<?, ?>[]
+    static <K, V> ReadBuffer<K, V>[] newReadBuffers(int length) {
+        return (ReadBuffer<K, V>[]) new ReadBuffer<?, ?>[length];
+    }
+
+    final class AddTask implements Runnable {
+        final Node<K, V> node;
+
+        AddTask(Node<K, V> node) {
+            this.node = node;
+        }
+
+        @Override
+        public void run() {
+            if (node.isAlive() && !node.linked) {
+                linkLast(node);
+            }
+        }
+    }
+
+    final class RemoveTask implements Runnable {
+        final Node<K, V> node;
+
+        RemoveTask(Node<K, V> node) {
+            this.node = node;
+        }
+
+        @Override
+        public void run() {
+            unlink(node);
+        }
+    }
+
+    static final class Node<K, V> implements Map.Entry<K, V> {
+        final K key;
+        volatile V value;
+        volatile boolean alive = true;
+        // list links, guarded by evictionLock
+        Node<K, V> prev;
+        Node<K, V> next;
+        boolean linked;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        boolean isAlive() {
+            return alive;
+        }
+
+        void retire() {
+            alive = false;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * Lossy single-stripe ring buffer of accessed nodes. Producers claim a slot with a CAS on
+     * {@code writeCounter}; if the stripe is full the access is dropped. Drained under evictionLock.
+     */
+    static final class ReadBuffer<K, V> {
+        final AtomicReferenceArray<Node<K, V>> slots = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        final AtomicLong writeCounter = new AtomicLong();
+        volatile long readCounter; // written only by the drainer
+
+        /** @return number of pending entries after the offer (>= size means the offer was dropped) */
+        int offer(Node<K, V> node) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            long size = tail - head;
+            if (size >= READ_BUFFER_SIZE) {
+                return (int) size; // full: drop, the caller will try to drain
+            }
+            if (writeCounter.compareAndSet(tail, tail + 1)) {
+                slots.lazySet((int) (tail & (READ_BUFFER_SIZE - 1)), node);
+                return (int) size + 1;
+            }
+            return (int) size; // lost the race: drop rather than spin
+        }
+
+        void drainTo(ConcurrentLRUCache<K, V> cache) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            for (; head < tail; head++) {
+                int index = (int) (head & (READ_BUFFER_SIZE - 1));
+                Node<K, V> node = slots.get(index);
+                if (node == null) {
+                    break; // slot claimed but not yet published, pick it up next time
+                }
+                slots.lazySet(index, null);
+                cache.onAccess(node);
+            }
+            readCounter = head;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package map;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Scaling benchmark: synchronizedMap(LRUCache) vs ConcurrentLRUCache for 1..64 threads.
+ *
+ * Workload: 90% get / 10% put over a skewed (Zipf-like) key distribution, so most reads are hits
+ * on a small hot set - exactly where the single monitor of the synchronized wrapper hurts most.
+ *
+ * Run:  java map.ConcurrentLRUCacheBenchmark [secondsPerRun]
+ * Numbers are ops/second summed over all threads (higher is better). Not a JMH harness, so treat
+ * them as relative numbers on the same machine only.
+ */
+public class ConcurrentLRUCacheBenchmark {
+
+    static final int CAPACITY = 10_000;
+    static final int KEY_SPACE = 4 * CAPACITY;
+    static final int KEYS_PER_THREAD = 1 << 16;
+
+    interface Cache {
+        Integer get(Integer key);
+
+        void put(Integer key, Integer value);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 1;
+
+        System.out.printf("%-8s %20s %20s %8s%n", "threads", "synchronized LRU", "ConcurrentLRU", "speedup");
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            Map<Integer, Integer> syncMap = Collections.synchronizedMap(new LRUCache<>(CAPACITY));
+            Cache synchronizedLru = new Cache() {
+                public Integer get(Integer key) { return syncMap.get(key); }
+                public void put(Integer key, Integer value) { syncMap.put(key, value); }
+            };
+            ConcurrentLRUCache<Integer, Integer> concurrent = new ConcurrentLRUCache<>(CAPACITY);
+            Cache concurrentLru = new Cache() {
+                public Integer get(Integer key) { return concurrent.get(key); }
+                public void put(Integer key, Integer value) { concurrent.put(key, value); }
+            };
+
+            double a = run(synchronizedLru, threads, seconds);
+            double b = run(concurrentLru, threads, seconds);
+            System.out.printf("%-8d %20.0f %20.0f %7.2fx%n", threads, a, b, b / a);
+        }
+    }
+
+    static double run(Cache cache, int threads, long seconds) throws InterruptedException {
+        for (int i = 0; i < CAPACITY; i++) {
+            cache.put(i, i); // warm: start from a full cache
+        }
+        LongAdder ops = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        for (int t = 0; t < threads; t++) {
+            Integer[] keys = zipfKeys(KEYS_PER_THREAD);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                long local = 0;
+                int i = ThreadLocalRandom.current().nextInt(KEYS_PER_THREAD);
+                while ((local & 1023) != 0 || System.nanoTime() < deadline) {
+                    Integer key = keys[i++ & (KEYS_PER_THREAD - 1)];
+                    if ((local % 10) == 0) {
+                        cache.put(key, key);
+                    } else {
+                        cache.get(key);
+                    }
+                    local++;
+                }
+                ops.add(local);
+                done.countDown();
+            });
+            worker.start();
+        }
+        start.countDown();
+        done.await();
+        return ops.sum() / (double) seconds;
+    }
+
+    // Skewed key stream: key = KEY_SPACE * u^3 concentrates ~50% of accesses on the first 12% of keys.
+    static Integer[] zipfKeys(int n) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Integer[] keys = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            double u = random.nextDouble();
+            keys[i] = (int) (KEY_SPACE * u * u * u);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,204 @@
+package map;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleBiFunction;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntBiFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongBiFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Parallel bulk operations over a ConcurrentHashMap: forEach, search, reduce/mapReduce and the
+ * primitive reducers, with a default parallelism threshold and an optional pool.
+ *
+ *  - The threshold is ConcurrentHashMap's parallelismThreshold: roughly the number of entries a
+ *    task handles before it splits. SEQUENTIAL (Long.MAX_VALUE) runs on the calling thread, 1 splits
+ *    as far as the pool allows. Below the threshold the operation is a plain sequential traversal.
+ *  - ConcurrentHashMap runs bulk tasks in ForkJoinPool.commonPool() - unless they are started from a
+ *    worker of another ForkJoinPool, then they run there. With a pool given, every operation is
+ *    submitted to that pool, which is how a job gets its own thread count (see BulkOpsBenchmark).
+ *    The number of splits is still capped by ConcurrentHashMap at 4 x the common pool's parallelism,
+ *    so a pool much wider than the common pool can't use all its threads.
+ *  - reduceToLong/Int/Double and the *Values* variants reduce primitives: a 30M-entry sum creates no
+ *    Long per entry, unlike reduce(..., Long::sum).
+ *  - Like every traversal of a ConcurrentHashMap the results are weakly consistent: concurrent
+ *    updates may or may not be seen. Transformers may return null to skip an entry (reduce, search,
+ *    forEach with transformer), as in ConcurrentHashMap.
+ */
+public final class ConcurrentMapBulkOps<K, V> {
+
+    public static final long SEQUENTIAL = Long.MAX_VALUE;
+    /**
+     * About 10K entries per task: each task then runs for tens of microseconds on simple functions,
+     * well above fork/join's per-task overhead; see BulkOpsBenchmark for the sweep on your machine.
+     */
+    public static final long DEFAULT_THRESHOLD = 10_000;
+
+    private final ConcurrentHashMap<K, V> map;
+    private final long threshold;
+    private final ForkJoinPool pool; // null: ConcurrentHashMap's default (common pool)
+
+    private ConcurrentMapBulkOps(ConcurrentHashMap<K, V> map, long threshold, ForkJoinPool pool) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold must be >= 1: " + threshold);
+        }
+        this.map = map;
+        this.threshold = threshold;
+        this.pool = pool;
+    }
+
+    public static <K, V> ConcurrentMapBulkOps<K, V> of(ConcurrentHashMap<K, V> map) {
+        return new ConcurrentMapBulkOps<>(map, DEFAULT_THRESHOLD, null);
+    }
+
+    /** Same map and pool, another default threshold. */
+    public ConcurrentMapBulkOps<K, V> withThreshold(long threshold) {
+        return new ConcurrentMapBulkOps<>(map, threshold, pool);
+    }
+
+    /** Same map and threshold; operations run in pool instead of the common pool. */
+    public ConcurrentMapBulkOps<K, V> withPool(ForkJoinPool pool) {
+        return new ConcurrentMapBulkOps<>(map, threshold, pool);
+    }
+
+    public long threshold() {
+        return threshold;
+    }
+
+    // ---------------------------------------------------------------- forEach
+
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        forEach(threshold, action);
+    }
+
+    public void forEach(long threshold, BiConsumer<? super K, ? super V> action) {
+        run(() -> {
+            map.forEach(threshold, action);
+            return null;
+        });
+    }
+
+    /** action is called for every non-null transformer(key, value). */
+    public <U> void forEach(long threshold, BiFunction<? super K, ? super V, ? extends U> transformer,
+                            Consumer<? super U> action) {
+        run(() -> {
+            map.forEach(threshold, transformer, action);
+            return null;
+        });
+    }
+
+    public void forEachValue(long threshold, Consumer<? super V> action) {
+        run(() -> {
+            map.forEachValue(threshold, action);
+            return null;
+        });
+    }
+
+    // ---------------------------------------------------------------- search
+
+    /** Some non-null searchFunction(key, value), or null; the other tasks stop once one is found. */
+    public <U> U search(BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+        return search(threshold, searchFunction);
+    }
+
+    public <U> U search(long threshold, BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+        return run(() -> map.search(threshold, searchFunction));
+    }
+
+    public <U> U searchValues(long threshold, Function<? super V, ? extends U> searchFunction) {
+        return run(() -> map.searchValues(threshold, searchFunction));
+    }
+
+    // ---------------------------------------------------------------- reduce / mapReduce
+
+    /** Reduces transformer(key, value) of every entry with reducer; null if nothing to reduce. */
+    public <U> U mapReduce(BiFunction<? super K, ? super V, ? extends U> transformer,
+                           BiFunction<? super U, ? super U, ? extends U> reducer) {
+        return mapReduce(threshold, transformer, reducer);
+    }
+
+    public <U> U mapReduce(long threshold, BiFunction<? super K, ? super V, ? extends U> transformer,
+                           BiFunction<? super U, ? super U, ? extends U> reducer) {
+        return run(() -> map.reduce(threshold, transformer, reducer));
+    }
+
+    public V reduceValues(long threshold, BiFunction<? super V, ? super V, ? extends V> reducer) {
+        return run(() -> map.reduceValues(threshold, reducer));
+    }
+
+    public <U> U mapReduceValues(long threshold, Function<? super V, ? extends U> transformer,
+                                 BiFunction<? super U, ? super U, ? extends U> reducer) {
+        return run(() -> map.reduceValues(threshold, transformer, reducer));
+    }
+
+    // ---------------------------------------------------------------- primitive reducers
+
+    public long reduceToLong(ToLongBiFunction<? super K, ? super V> transformer, long basis,
+                             LongBinaryOperator reducer) {
+        return reduceToLong(threshold, transformer, basis, reducer);
+    }
+
+    public long reduceToLong(long threshold, ToLongBiFunction<? super K, ? super V> transformer, long basis,
+                             LongBinaryOperator reducer) {
+        return run(() -> map.reduceToLong(threshold, transformer, basis, reducer));
+    }
+
+    public int reduceToInt(ToIntBiFunction<? super K, ? super V> transformer, int basis,
+                           IntBinaryOperator reducer) {
+        return reduceToInt(threshold, transformer, basis, reducer);
+    }
+
+    public int reduceToInt(long threshold, ToIntBiFunction<? super K, ? super V> transformer, int basis,
+                           IntBinaryOperator reducer) {
+        return run(() -> map.reduceToInt(threshold, transformer, basis, reducer));
+    }
+
+    public double reduceToDouble(ToDoubleBiFunction<? super K, ? super V> transformer, double basis,
+                                 DoubleBinaryOperator reducer) {
+        return reduceToDouble(threshold, transformer, basis, reducer);
+    }
+
+    public double reduceToDouble(long threshold, ToDoubleBiFunction<? super K, ? super V> transformer, double basis,
+                                 DoubleBinaryOperator reducer) {
+        return run(() -> map.reduceToDouble(threshold, transformer, basis, reducer));
+    }
+
+    public long reduceValuesToLong(long threshold, ToLongFunction<? super V> transformer, long basis,
+                                   LongBinaryOperator reducer) {
+        return run(() -> map.reduceValuesToLong(threshold, transformer, basis, reducer));
+    }
+
+    public int reduceValuesToInt(long threshold, ToIntFunction<? super V> transformer, int basis,
+                                 IntBinaryOperator reducer) {
+        return run(() -> map.reduceValuesToInt(threshold, transformer, basis, reducer));
+    }
+
+    public double reduceValuesToDouble(long threshold, ToDoubleFunction<? super V> transformer, double basis,
+                                       DoubleBinaryOperator reducer) {
+        return run(() -> map.reduceValuesToDouble(threshold, transformer, basis, reducer));
+    }
+
+    /** Sum of transformer(value) over all values, without boxing. */
+    public long sumValues(ToLongFunction<? super V> transformer) {
+        return reduceValuesToLong(threshold, transformer, 0L, Long::sum);
+    }
+
+    // Already inside pool (e.g. a bulk op called from another one): run here, the tasks stay in pool.
+    private <T> T run(Supplier<T> operation) {
+        if (pool == null || ForkJoinTask.getPool() == pool) {
+            return operation.get();
+        }
+        return pool.submit(operation::get).join();
+    }
+}
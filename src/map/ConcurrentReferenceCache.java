@@ -0,0 +1,264 @@
+package map;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe replacement for a WeakHashMap used as a cache (see WeakHashMapDemo).
+ *
+ * Why not Collections.synchronizedMap(new WeakHashMap<>())?
+ *  - WeakHashMap is not thread-safe, and it calls expungeStaleEntries() (drains its whole
+ *    ReferenceQueue) at the start of almost every operation -> with a synchronized wrapper every
+ *    get() of every thread queues up behind one lock.
+ *
+ * This cache:
+ *  - Stores entries in a ConcurrentHashMap, so reads and writes scale across cores.
+ *  - Keys can be STRONG or WEAK; values STRONG, WEAK or SOFT (soft = kept until memory runs low,
+ *    usually what you want for an image cache).
+ *  - WEAK keys are compared by IDENTITY (==, System.identityHashCode), like IdentityHashMap: once
+ *    the key object is unreachable nobody can look the entry up again anyway, so equals() would only
+ *    keep entries alive through "equal" copies (e.g. the same Integer value boxed twice).
+ *  - Cleared references are removed from the map in small batches (at most DRAIN_BATCH per call) by
+ *    whichever thread wins a tryLock() during a write, or on about one read in READS_PER_DRAIN
+ *    (sampled per thread, so reads write no shared state). Nobody ever waits for that lock and
+ *    nobody drains everything at once.
+ *
+ * size() may include entries whose key/value was collected but not drained yet; cleanUp() forces it.
+ */
+public class ConcurrentReferenceCache<K, V> {
+
+    public enum Strength { STRONG, WEAK, SOFT }
+
+    static final int DRAIN_BATCH = 16;
+    static final int READS_PER_DRAIN = 64;
+
+    final Strength keyStrength;
+    final Strength valueStrength;
+    final ConcurrentHashMap<Object, Object> map = new ConcurrentHashMap<>();
+    final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+    final ReentrantLock drainLock = new ReentrantLock();
+
+    public ConcurrentReferenceCache(Strength keyStrength, Strength valueStrength) {
+        if (keyStrength == Strength.SOFT) {
+            throw new IllegalArgumentException("soft keys are not supported, use WEAK keys or SOFT values");
+        }
+        this.keyStrength = Objects.requireNonNull(keyStrength);
+        this.valueStrength = Objects.requireNonNull(valueStrength);
+    }
+
+    public V get(K key) {
+        Object stored = map.get(lookupKey(key));
+        if (ThreadLocalRandom.current().nextInt(READS_PER_DRAIN) == 0) { // no shared read counter to contend on
+            tryDrain();
+        }
+        return stored == null ? null : unwrap(stored);
+    }
+
+    /** @return the previous value, or null (also if it had already been collected) */
+    public V put(K key, V value) {
+        Objects.requireNonNull(value);
+        Object[] previous = new Object[1];
+        map.compute(keyReference(key), (mapKey, old) -> {
+            previous[0] = old;
+            // mapKey is our argument, not the stored key: when replacing, the entry keeps its own equal
+            // WeakKey and ours is garbage. drain() copes: while the key lives both find the entry, and once
+            // it is collected the stored WeakKey's own queue entry removes it
+            return valueReference(mapKey, value);
+        });
+        tryDrain();
+        return previous[0] == null ? null : unwrap(previous[0]);
+    }
+
+    public V putIfAbsent(K key, V value) {
+        Objects.requireNonNull(value);
+        Object[] current = new Object[1];
+        map.compute(keyReference(key), (mapKey, old) -> {
+            if (old != null && unwrap(old) != null) {
+                current[0] = old;
+                return old;
+            }
+            return valueReference(mapKey, value); // absent, or its value was collected
+        });
+        tryDrain();
+        return current[0] == null ? null : unwrap(current[0]);
+    }
+
+    public V remove(K key) {
+        Object old = map.remove(lookupKey(key));
+        tryDrain();
+        return old == null ? null : unwrap(old);
+    }
+
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    /** Approximate: may still count entries that were collected but not drained yet. */
+    public int size() {
+        return map.size();
+    }
+
+    /** Removes every entry whose key or value was collected so far. */
+    public void cleanUp() {
+        drainLock.lock();
+        try {
+            while (drain() == DRAIN_BATCH) {
+                // keep going until the queue is empty
+            }
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        map.forEach((mapKey, stored) -> {
+            Object key = mapKey instanceof WeakKey<?> weak ? weak.get() : mapKey;
+            V value = unwrap(stored);
+            if (key != null && value != null) {
+                if (sb.length() > 1) sb.append(", ");
+                sb.append(key).append('=').append(value);
+            }
+        });
+        return sb.append('}').toString();
+    }
+
+    // ---------------------------------------------------------------- references
+
+    void tryDrain() {
+        if (drainLock.tryLock()) {
+            try {
+                drain();
+            } finally {
+                drainLock.unlock();
+            }
+        }
+    }
+
+    // Guarded by drainLock. Removes at most DRAIN_BATCH cleared references, returns how many.
+    int drain() {
+        int drained = 0;
+        Reference<?> ref;
+        while (drained < DRAIN_BATCH && (ref = queue.poll()) != null) {
+            drained++;
+            if (ref instanceof WeakKey<?>) {
+                map.remove(ref); // WeakKey.equals() is identity on the reference itself once cleared
+            } else if (ref instanceof ValueReference<?> value) {
+                map.remove(value.mapKey(), ref); // only if the entry still holds THIS value
+            }
+        }
+        return drained;
+    }
+
+    Object keyReference(K key) {
+        Objects.requireNonNull(key);
+        return keyStrength == Strength.WEAK ? new WeakKey<>(key, queue) : key;
+    }
+
+    Object lookupKey(Object key) {
+        Objects.requireNonNull(key);
+        return keyStrength == Strength.WEAK ? new LookupKey(key) : key;
+    }
+
+    Object valueReference(Object mapKey, V value) {
+        return switch (valueStrength) {
+            case STRONG -> value;
+            case WEAK -> new WeakValue<>(mapKey, value, queue);
+            case SOFT -> new SoftValue<>(mapKey, value, queue);
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    V unwrap(Object stored) {
+        return valueStrength == Strength.STRONG ? (V) stored : ((ValueReference<V>) stored).get();
+    }
+
+    interface ValueReference<V> {
+        Object mapKey();
+
+        V get();
+    }
+
+    /** Weakly referenced key, hashed and compared by identity of the referent. */
+    static final class WeakKey<K> extends WeakReference<K> {
+        final int hash;
+
+        WeakKey(K key, ReferenceQueue<Object> queue) {
+            super(key, queue);
+            this.hash = System.identityHashCode(key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            Object key = get();
+            if (key == null) {
+                return false; // cleared: only equal to itself (that's how drain() finds it)
+            }
+            if (o instanceof WeakKey<?> other) {
+                return key == other.get();
+            }
+            return o instanceof LookupKey lookup && key == lookup.key;
+        }
+    }
+
+    /** Short-lived probe for get()/remove() with weak keys, so lookups don't create references. */
+    static final class LookupKey {
+        final Object key;
+
+        LookupKey(Object key) {
+            this.key = key;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(key);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof WeakKey<?> weak ? weak.get() == key
+                    : o instanceof LookupKey other && other.key == key;
+        }
+    }
+
+    static final class WeakValue<V> extends WeakReference<V> implements ValueReference<V> {
+        final Object mapKey;
+
+        WeakValue(Object mapKey, V value, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.mapKey = mapKey;
+        }
+
+        public Object mapKey() {
+            return mapKey;
+        }
+    }
+
+    static final class SoftValue<V> extends SoftReference<V> implements ValueReference<V> {
+        final Object mapKey;
+
+        SoftValue(Object mapKey, V value, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.mapKey = mapKey;
+        }
+
+        public Object mapKey() {
+            return mapKey;
+        }
+    }
+}
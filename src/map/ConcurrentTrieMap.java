@@ -0,0 +1,815 @@
+package map;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Concurrent hash trie (Ctrie, Prokopec et al. 2012) with O(1) point-in-time snapshots - the answer to
+ * "copy the ConcurrentHashMap into an immutable map" when the copy is too big to make every minute.
+ *
+ *  - The trie: every INode points to a main node - a CNode (32-way bitmap-indexed array of
+ *    SNode = key/value and INode children, hash consumed 5 bits per level), a TNode (a tombed
+ *    single entry, compressed into its parent by the next writer) or an LNode (full hash collision
+ *    list). Reads are lock-free; a write copies one CNode and swaps it in with a CAS on its INode.
+ *  - Snapshots: every INode and CNode carries a generation. snapshot() swaps in a new root of a new
+ *    generation (RDCSS: the swap only succeeds if the old root's main node didn't change meanwhile)
+ *    and hands out a root of yet another generation for the copy. Nothing else is copied; writers
+ *    on either side that meet a node of an older generation copy just that node first ("renew"),
+ *    so copying is lazy and spread over the writes that need it.
+ *  - GCAS instead of a plain CAS for main nodes: a new main node is committed only if the root's
+ *    generation is still the one the writer started in; otherwise it is rolled back. That is
+ *    what stops a write that raced with snapshot() from leaking into the snapshot.
+ *  - readOnlySnapshot() skips the new generation for the copy: it shares the old root and copies
+ *    nothing at all - for checkpointing (iterate and write out) that is all it takes.
+ *  - Iterators and size() run over a read-only snapshot, so they are consistent (unlike
+ *    ConcurrentHashMap's weakly consistent traversals) and size() is O(n). Each one starts a new
+ *    generation, so the writes after it renew the nodes on their path once - don't poll size().
+ * Null keys and values are rejected. computeIfAbsent/compute/merge are ConcurrentMap's retry loops
+ * over putIfAbsent/replace/remove: atomic, but the function may run more than once.
+ */
+public class ConcurrentTrieMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+
+    private static final VarHandle ROOT;
+    private static final VarHandle MAIN;
+    private static final VarHandle PREV;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            ROOT = lookup.findVarHandle(ConcurrentTrieMap.class, "root", Object.class);
+            MAIN = lookup.findVarHandle(INode.class, "main", MainNode.class);
+            PREV = lookup.findVarHandle(MainNode.class, "prev", MainNode.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // rec_* results besides a value: retry from the root, or no mapping
+    private static final Object RESTART = new Object();
+    private static final Object NOT_FOUND = new Object();
+    // insert conditions besides an expected value
+    private static final Object ALWAYS = new Object();
+    private static final Object IF_ABSENT = new Object();
+    private static final Object IF_PRESENT = new Object();
+
+    private volatile Object root; // INode, or an RdcssDescriptor while snapshot() swaps it
+    private final boolean readOnly;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    public ConcurrentTrieMap() {
+        this(newRoot(new Gen()), false);
+    }
+
+    private ConcurrentTrieMap(INode root, boolean readOnly) {
+        this.root = root;
+        this.readOnly = readOnly;
+    }
+
+    private static INode newRoot(Gen gen) {
+        INode in = new INode(gen);
+        in.main = new CNode(0, new Object[0], gen);
+        return in;
+    }
+
+    // ---------------------------------------------------------------- snapshots
+
+    /** Independent, writable copy as of now, in O(1). Later writes to either map don't show in the other. */
+    public ConcurrentTrieMap<K, V> snapshot() {
+        if (readOnly) {
+            return new ConcurrentTrieMap<>(readRoot(false).copyToGen(new Gen(), this), false);
+        }
+        while (true) {
+            INode r = readRoot(false);
+            MainNode expected = r.gcasRead(this);
+            if (rdcssRoot(r, expected, r.copyToGen(new Gen(), this))) {
+                return new ConcurrentTrieMap<>(r.copyToGen(new Gen(), this), false);
+            }
+        }
+    }
+
+    /** Unmodifiable view as of now, in O(1); cheaper than snapshot() as it never copies nodes. */
+    public ConcurrentTrieMap<K, V> readOnlySnapshot() {
+        if (readOnly) {
+            return this;
+        }
+        while (true) {
+            INode r = readRoot(false);
+            MainNode expected = r.gcasRead(this);
+            if (rdcssRoot(r, expected, r.copyToGen(new Gen(), this))) {
+                return new ConcurrentTrieMap<>(r, true);
+            }
+        }
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    // ---------------------------------------------------------------- Map / ConcurrentMap
+
+    @Override
+    public V get(Object key) {
+        Object v = lookup(Objects.requireNonNull(key));
+        return v == NOT_FOUND ? null : cast(v);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return lookup(Objects.requireNonNull(key)) != NOT_FOUND;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return insert(key, value, ALWAYS);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return insert(key, value, IF_ABSENT);
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        return insert(key, value, IF_PRESENT);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        return insert(key, newValue, Objects.requireNonNull(oldValue)) != null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        Object v = delete(Objects.requireNonNull(key), null);
+        return v == NOT_FOUND ? null : cast(v);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        return value != null && delete(Objects.requireNonNull(key), value) != NOT_FOUND;
+    }
+
+    @Override
+    public void clear() {
+        checkWritable();
+        while (true) {
+            INode r = readRoot(false);
+            if (rdcssRoot(r, r.gcasRead(this), newRoot(new Gen()))) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (EntryIterator it = new EntryIterator(readOnlySnapshot()); it.hasNext(); it.next()) {
+            size++;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !new EntryIterator(readOnlySnapshot()).hasNext();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es = entrySet;
+        return es != null ? es : (entrySet = new EntrySet());
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            EntryIterator it = new EntryIterator(readOnlySnapshot());
+            return new Iterator<>() {
+                Map.Entry<K, V> last;
+
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                public Map.Entry<K, V> next() {
+                    SNode sn = it.next();
+                    K key = cast(sn.key);
+                    Map.Entry<K, V> e = last = new AbstractMap.SimpleEntry<>(key, cast(sn.value)) {
+                        @Override
+                        public V setValue(V value) {
+                            super.setValue(value);
+                            return put(key, value); // writes through to this map, not to the snapshot
+                        }
+                    };
+                    return e;
+                }
+
+                public void remove() {
+                    if (last == null) {
+                        throw new IllegalStateException();
+                    }
+                    ConcurrentTrieMap.this.remove(last.getKey());
+                    last = null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentTrieMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentTrieMap.this.clear();
+        }
+    }
+
+    // ---------------------------------------------------------------- operations from the root
+
+    private Object lookup(Object key) {
+        int hc = hash(key);
+        while (true) {
+            INode r = readRoot(false);
+            Object v = r.recLookup(key, hc, 0, null, r.gen, this);
+            if (v != RESTART) {
+                return v;
+            }
+        }
+    }
+
+    /** @return the previous value, or null if there was none or cond didn't hold */
+    private V insert(K key, V value, Object cond) {
+        checkWritable();
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        int hc = hash(key);
+        while (true) {
+            INode r = readRoot(false);
+            Object v = r.recInsert(key, value, hc, cond, 0, null, r.gen, this);
+            if (v != RESTART) {
+                return v == NOT_FOUND ? null : cast(v);
+            }
+        }
+    }
+
+    /** expected == null: remove whatever key maps to. @return the removed value or NOT_FOUND */
+    private Object delete(Object key, Object expected) {
+        checkWritable();
+        int hc = hash(key);
+        while (true) {
+            INode r = readRoot(false);
+            Object v = r.recRemove(key, expected, hc, 0, null, r.gen, this);
+            if (v != RESTART) {
+                return v;
+            }
+        }
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("read-only snapshot");
+        }
+    }
+
+    static int hash(Object key) {
+        return IntObjectMap.mix(key.hashCode()); // a bijection, so only equal hashCodes collide fully
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object o) {
+        return (T) o;
+    }
+
+    // ---------------------------------------------------------------- RDCSS on the root
+
+    static final class RdcssDescriptor {
+        final INode old;
+        final MainNode expectedMain;
+        final INode replacement;
+        volatile boolean committed;
+
+        RdcssDescriptor(INode old, MainNode expectedMain, INode replacement) {
+            this.old = old;
+            this.expectedMain = expectedMain;
+            this.replacement = replacement;
+        }
+    }
+
+    INode readRoot(boolean abort) {
+        Object r = root;
+        return r instanceof INode in ? in : rdcssComplete(abort);
+    }
+
+    /** root = replacement if root == old and old.main == expectedMain, as one atomic step. */
+    private boolean rdcssRoot(INode old, MainNode expectedMain, INode replacement) {
+        RdcssDescriptor desc = new RdcssDescriptor(old, expectedMain, replacement);
+        if (ROOT.compareAndSet(this, old, desc)) {
+            rdcssComplete(false);
+            return desc.committed;
+        }
+        return false;
+    }
+
+    private INode rdcssComplete(boolean abort) {
+        while (true) {
+            Object r = root;
+            if (r instanceof INode in) {
+                return in;
+            }
+            RdcssDescriptor desc = (RdcssDescriptor) r;
+            if (abort) {
+                if (ROOT.compareAndSet(this, desc, desc.old)) {
+                    return desc.old;
+                }
+                continue;
+            }
+            if (desc.old.gcasRead(this) == desc.expectedMain) {
+                if (ROOT.compareAndSet(this, desc, desc.replacement)) {
+                    desc.committed = true;
+                    return desc.replacement;
+                }
+            } else if (ROOT.compareAndSet(this, desc, desc.old)) {
+                return desc.old;
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- nodes
+
+    /** Generation tag; compared by identity. */
+    static final class Gen {
+    }
+
+    abstract static class MainNode {
+        volatile MainNode prev; // set while a GCAS is in flight, see INode.gcas
+    }
+
+    /** Marks a rolled-back GCAS: the INode goes back to prev. */
+    static final class FailedNode extends MainNode {
+        FailedNode(MainNode prev) {
+            this.prev = prev;
+        }
+    }
+
+    static final class SNode {
+        final Object key;
+        final Object value;
+        final int hc;
+
+        SNode(Object key, Object value, int hc) {
+            this.key = key;
+            this.value = value;
+            this.hc = hc;
+        }
+
+        TNode copyTombed() {
+            return new TNode(key, value, hc);
+        }
+
+        boolean matches(Object k, int h) {
+            return hc == h && key.equals(k);
+        }
+    }
+
+    static final class TNode extends MainNode {
+        final Object key;
+        final Object value;
+        final int hc;
+
+        TNode(Object key, Object value, int hc) {
+            this.key = key;
+            this.value = value;
+            this.hc = hc;
+        }
+
+        SNode copyUntombed() {
+            return new SNode(key, value, hc);
+        }
+    }
+
+    /** Keys whose hashes are equal in all 32 bits; immutable, usually two entries. */
+    static final class LNode extends MainNode {
+        final SNode[] entries;
+
+        LNode(SNode[] entries) {
+            this.entries = entries;
+        }
+
+        Object get(Object k) {
+            for (SNode sn : entries) {
+                if (sn.key.equals(k)) {
+                    return sn.value;
+                }
+            }
+            return NOT_FOUND;
+        }
+
+        LNode inserted(Object k, Object v, int hc) {
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].key.equals(k)) {
+                    SNode[] copy = entries.clone();
+                    copy[i] = new SNode(k, v, hc);
+                    return new LNode(copy);
+                }
+            }
+            SNode[] copy = Arrays.copyOf(entries, entries.length + 1);
+            copy[entries.length] = new SNode(k, v, hc);
+            return new LNode(copy);
+        }
+
+        /** Without k; a single remaining entry becomes a TNode, to be merged into the parent. */
+        MainNode removed(Object k) {
+            SNode[] copy = new SNode[entries.length - 1];
+            int j = 0;
+            for (SNode sn : entries) {
+                if (!sn.key.equals(k)) {
+                    copy[j++] = sn;
+                }
+            }
+            return copy.length == 1 ? copy[0].copyTombed() : new LNode(copy);
+        }
+    }
+
+    static final class CNode extends MainNode {
+        final int bitmap;
+        final Object[] array; // SNode or INode, in bit order
+        final Gen gen;
+
+        CNode(int bitmap, Object[] array, Gen gen) {
+            this.bitmap = bitmap;
+            this.array = array;
+            this.gen = gen;
+        }
+
+        CNode updatedAt(int pos, Object node, Gen gen) {
+            Object[] copy = array.clone();
+            copy[pos] = node;
+            return new CNode(bitmap, copy, gen);
+        }
+
+        CNode removedAt(int pos, int flag, Gen gen) {
+            Object[] copy = new Object[array.length - 1];
+            System.arraycopy(array, 0, copy, 0, pos);
+            System.arraycopy(array, pos + 1, copy, pos, array.length - pos - 1);
+            return new CNode(bitmap ^ flag, copy, gen);
+        }
+
+        CNode insertedAt(int pos, int flag, Object node, Gen gen) {
+            Object[] copy = new Object[array.length + 1];
+            System.arraycopy(array, 0, copy, 0, pos);
+            copy[pos] = node;
+            System.arraycopy(array, pos, copy, pos + 1, array.length - pos);
+            return new CNode(bitmap | flag, copy, gen);
+        }
+
+        /** Copy of this node in generation ngen; child INodes are copied too (they are one word each). */
+        CNode renewed(Gen ngen, ConcurrentTrieMap<?, ?> ct) {
+            Object[] copy = new Object[array.length];
+            for (int i = 0; i < array.length; i++) {
+                copy[i] = array[i] instanceof INode in ? in.copyToGen(ngen, ct) : array[i];
+            }
+            return new CNode(bitmap, copy, ngen);
+        }
+
+        /** A CNode below the root with a single SNode turns into a TNode, for the parent to absorb. */
+        MainNode toContracted(int lev) {
+            if (array.length == 1 && lev > 0 && array[0] instanceof SNode sn) {
+                return sn.copyTombed();
+            }
+            return this;
+        }
+
+        /** Replaces tombed children by their SNodes, then contracts. */
+        MainNode toCompressed(ConcurrentTrieMap<?, ?> ct, int lev, Gen gen) {
+            Object[] copy = new Object[array.length];
+            for (int i = 0; i < array.length; i++) {
+                Object sub = array[i];
+                if (sub instanceof INode in && in.gcasRead(ct) instanceof TNode tn) {
+                    copy[i] = tn.copyUntombed();
+                } else {
+                    copy[i] = sub;
+                }
+            }
+            return new CNode(bitmap, copy, gen).toContracted(lev);
+        }
+
+        static MainNode dual(SNode x, SNode y, int lev, Gen gen) {
+            if (lev >= 35) {
+                return new LNode(new SNode[] {x, y});
+            }
+            int xidx = (x.hc >>> lev) & 0x1f;
+            int yidx = (y.hc >>> lev) & 0x1f;
+            int bmp = (1 << xidx) | (1 << yidx);
+            if (xidx == yidx) {
+                INode sub = new INode(gen);
+                sub.main = dual(x, y, lev + 5, gen);
+                return new CNode(bmp, new Object[] {sub}, gen);
+            }
+            return new CNode(bmp, xidx < yidx ? new Object[] {x, y} : new Object[] {y, x}, gen);
+        }
+    }
+
+    static final class INode {
+        volatile MainNode main;
+        final Gen gen;
+
+        INode(Gen gen) {
+            this.gen = gen;
+        }
+
+        INode copyToGen(Gen ngen, ConcurrentTrieMap<?, ?> ct) {
+            INode in = new INode(ngen);
+            in.main = gcasRead(ct);
+            return in;
+        }
+
+        // ------------------------------------------------------------ GCAS
+
+        MainNode gcasRead(ConcurrentTrieMap<?, ?> ct) {
+            MainNode m = main;
+            return m.prev == null ? m : gcasComplete(m, ct);
+        }
+
+        /** main = n if main == old and the root generation is still gen when n gets committed. */
+        boolean gcas(MainNode old, MainNode n, ConcurrentTrieMap<?, ?> ct) {
+            n.prev = old;
+            if (MAIN.compareAndSet(this, old, n)) {
+                gcasComplete(n, ct);
+                return n.prev == null;
+            }
+            return false;
+        }
+
+        private MainNode gcasComplete(MainNode m, ConcurrentTrieMap<?, ?> ct) {
+            while (m != null) {
+                MainNode prev = m.prev;
+                INode ctr = ct.readRoot(true);
+                if (prev == null) {
+                    return m;
+                }
+                if (prev instanceof FailedNode fn) {
+                    // roll back to the node before the failed GCAS
+                    if (MAIN.compareAndSet(this, m, fn.prev)) {
+                        return fn.prev;
+                    }
+                    m = main;
+                } else if (ctr.gen == gen && !ct.readOnly) {
+                    // still in the writer's generation: commit
+                    if (PREV.compareAndSet(m, prev, null)) {
+                        return m;
+                    }
+                } else {
+                    // a snapshot was taken meanwhile: fail this GCAS, then roll back on the next round
+                    PREV.compareAndSet(m, prev, new FailedNode(prev));
+                    m = main;
+                }
+            }
+            return null;
+        }
+
+        // ------------------------------------------------------------ lookup / insert / remove
+
+        Object recLookup(Object k, int hc, int lev, INode parent, Gen startgen, ConcurrentTrieMap<?, ?> ct) {
+            while (true) {
+                MainNode m = gcasRead(ct);
+                if (m instanceof CNode cn) {
+                    int flag = 1 << ((hc >>> lev) & 0x1f);
+                    if ((cn.bitmap & flag) == 0) {
+                        return NOT_FOUND;
+                    }
+                    Object sub = cn.array[Integer.bitCount(cn.bitmap & (flag - 1))];
+                    if (sub instanceof INode in) {
+                        if (ct.readOnly || in.gen == startgen) {
+                            return in.recLookup(k, hc, lev + 5, this, startgen, ct);
+                        }
+                        if (gcas(cn, cn.renewed(startgen, ct), ct)) {
+                            continue;
+                        }
+                        return RESTART;
+                    }
+                    SNode sn = (SNode) sub;
+                    return sn.matches(k, hc) ? sn.value : NOT_FOUND;
+                } else if (m instanceof TNode tn) {
+                    if (ct.readOnly) {
+                        return tn.hc == hc && tn.key.equals(k) ? tn.value : NOT_FOUND;
+                    }
+                    clean(parent, ct, lev - 5);
+                    return RESTART;
+                } else {
+                    return ((LNode) m).get(k);
+                }
+            }
+        }
+
+        /** @return previous value, NOT_FOUND (no previous value or cond failed) or RESTART */
+        Object recInsert(Object k, Object v, int hc, Object cond, int lev, INode parent, Gen startgen,
+                         ConcurrentTrieMap<?, ?> ct) {
+            while (true) {
+                MainNode m = gcasRead(ct);
+                if (m instanceof CNode cn) {
+                    int flag = 1 << ((hc >>> lev) & 0x1f);
+                    int pos = Integer.bitCount(cn.bitmap & (flag - 1));
+                    if ((cn.bitmap & flag) == 0) {
+                        if (cond != ALWAYS && cond != IF_ABSENT) {
+                            return NOT_FOUND;
+                        }
+                        CNode rn = cn.gen == gen ? cn : cn.renewed(gen, ct);
+                        return gcas(cn, rn.insertedAt(pos, flag, new SNode(k, v, hc), gen), ct) ? NOT_FOUND : RESTART;
+                    }
+                    Object sub = cn.array[pos];
+                    if (sub instanceof INode in) {
+                        if (in.gen == startgen) {
+                            return in.recInsert(k, v, hc, cond, lev + 5, this, startgen, ct);
+                        }
+                        if (gcas(cn, cn.renewed(startgen, ct), ct)) {
+                            continue;
+                        }
+                        return RESTART;
+                    }
+                    SNode sn = (SNode) sub;
+                    if (sn.matches(k, hc)) {
+                        if (cond == IF_ABSENT || (cond != ALWAYS && cond != IF_PRESENT && !cond.equals(sn.value))) {
+                            return cond == IF_ABSENT ? sn.value : NOT_FOUND;
+                        }
+                        return gcas(cn, cn.updatedAt(pos, new SNode(k, v, hc), gen), ct) ? sn.value : RESTART;
+                    }
+                    if (cond != ALWAYS && cond != IF_ABSENT) {
+                        return NOT_FOUND;
+                    }
+                    // different key in this slot: push both one level down
+                    CNode rn = cn.gen == gen ? cn : cn.renewed(gen, ct);
+                    INode child = new INode(gen);
+                    child.main = CNode.dual(sn, new SNode(k, v, hc), lev + 5, gen);
+                    return gcas(cn, rn.updatedAt(pos, child, gen), ct) ? NOT_FOUND : RESTART;
+                } else if (m instanceof TNode) {
+                    clean(parent, ct, lev - 5);
+                    return RESTART;
+                } else {
+                    LNode ln = (LNode) m;
+                    Object old = ln.get(k);
+                    if (old == NOT_FOUND ? cond != ALWAYS && cond != IF_ABSENT
+                            : cond == IF_ABSENT || (cond != ALWAYS && cond != IF_PRESENT && !cond.equals(old))) {
+                        return cond == IF_ABSENT ? old : NOT_FOUND;
+                    }
+                    return gcas(ln, ln.inserted(k, v, hc), ct) ? old : RESTART;
+                }
+            }
+        }
+
+        /** @return removed value, NOT_FOUND or RESTART; expected != null: remove only that value */
+        Object recRemove(Object k, Object expected, int hc, int lev, INode parent, Gen startgen,
+                         ConcurrentTrieMap<?, ?> ct) {
+            while (true) {
+                MainNode m = gcasRead(ct);
+                if (m instanceof CNode cn) {
+                    int flag = 1 << ((hc >>> lev) & 0x1f);
+                    if ((cn.bitmap & flag) == 0) {
+                        return NOT_FOUND;
+                    }
+                    int pos = Integer.bitCount(cn.bitmap & (flag - 1));
+                    Object sub = cn.array[pos];
+                    Object result;
+                    if (sub instanceof INode in) {
+                        if (in.gen != startgen) {
+                            if (gcas(cn, cn.renewed(startgen, ct), ct)) {
+                                continue;
+                            }
+                            return RESTART;
+                        }
+                        result = in.recRemove(k, expected, hc, lev + 5, this, startgen, ct);
+                    } else {
+                        SNode sn = (SNode) sub;
+                        if (!sn.matches(k, hc) || (expected != null && !expected.equals(sn.value))) {
+                            return NOT_FOUND;
+                        }
+                        MainNode ncn = cn.removedAt(pos, flag, gen).toContracted(lev);
+                        result = gcas(cn, ncn, ct) ? sn.value : RESTART;
+                    }
+                    if (result != NOT_FOUND && result != RESTART && parent != null && gcasRead(ct) instanceof TNode tn) {
+                        cleanParent(tn, parent, ct, hc, lev, startgen); // never tomb the root
+                    }
+                    return result;
+                } else if (m instanceof TNode) {
+                    clean(parent, ct, lev - 5);
+                    return RESTART;
+                } else {
+                    LNode ln = (LNode) m;
+                    Object old = ln.get(k);
+                    if (old == NOT_FOUND || (expected != null && !expected.equals(old))) {
+                        return NOT_FOUND;
+                    }
+                    return gcas(ln, ln.removed(k), ct) ? old : RESTART;
+                }
+            }
+        }
+
+        /** Compresses parent nd, e.g. after finding a TNode below it. */
+        private void clean(INode nd, ConcurrentTrieMap<?, ?> ct, int lev) {
+            MainNode m = nd.gcasRead(ct);
+            if (m instanceof CNode cn) {
+                nd.gcas(cn, cn.toCompressed(ct, lev, gen), ct);
+            }
+        }
+
+        /** Replaces this tombed INode in parent by its single entry. */
+        private void cleanParent(TNode tn, INode parent, ConcurrentTrieMap<?, ?> ct, int hc, int lev, Gen startgen) {
+            while (true) {
+                if (!(parent.gcasRead(ct) instanceof CNode cn)) {
+                    return; // parent is no longer a CNode, nothing to do
+                }
+                int flag = 1 << ((hc >>> (lev - 5)) & 0x1f);
+                if ((cn.bitmap & flag) == 0) {
+                    return; // someone else already removed this INode
+                }
+                int pos = Integer.bitCount(cn.bitmap & (flag - 1));
+                if (cn.array[pos] != this) {
+                    return;
+                }
+                MainNode ncn = cn.updatedAt(pos, tn.copyUntombed(), gen).toContracted(lev - 5);
+                if (parent.gcas(cn, ncn, ct) || ct.readRoot(false).gen != startgen) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- iteration over a read-only snapshot
+
+    /** Depth-first walk; the trie is at most 7 CNode levels deep (32-bit hash, 5 bits per level). */
+    static final class EntryIterator implements Iterator<SNode> {
+        private final ConcurrentTrieMap<?, ?> ct;
+        private final Object[][] stack = new Object[8][];
+        private final int[] positions = new int[8];
+        private int depth = -1;
+        private SNode[] collisions;
+        private int collisionPos;
+        private SNode next;
+
+        EntryIterator(ConcurrentTrieMap<?, ?> readOnly) {
+            this.ct = readOnly;
+            enter(readOnly.readRoot(false));
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public SNode next() {
+            SNode sn = next;
+            if (sn == null) {
+                throw new NoSuchElementException();
+            }
+            advance();
+            return sn;
+        }
+
+        private void enter(INode in) {
+            MainNode m = in.gcasRead(ct);
+            if (m instanceof CNode cn) {
+                stack[++depth] = cn.array;
+                positions[depth] = -1;
+                advance();
+            } else if (m instanceof TNode tn) {
+                next = tn.copyUntombed(); // in a snapshot a TNode is still a live entry
+            } else {
+                collisions = ((LNode) m).entries;
+                collisionPos = 0;
+                advance();
+            }
+        }
+
+        private void advance() {
+            if (collisions != null) {
+                if (collisionPos < collisions.length) {
+                    next = collisions[collisionPos++];
+                    return;
+                }
+                collisions = null;
+            }
+            while (depth >= 0) {
+                int pos = ++positions[depth];
+                Object[] array = stack[depth];
+                if (pos < array.length) {
+                    if (array[pos] instanceof SNode sn) {
+                        next = sn;
+                    } else {
+                        enter((INode) array[pos]);
+                    }
+                    return;
+                }
+                depth--;
+            }
+            next = null;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package map;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * ConcurrentHashMap with a reverse value -> keys index (see ValueIndexedMap): containsValue() and
+ * keysFor() are O(1) instead of ConcurrentHashMap's full traversal.
+ *
+ * Every write is a forward.compute() and the index is updated INSIDE that compute, i.e. under the bin
+ * lock of the key: writes to one key are serialized together with their index changes, so when a
+ * write returns, map and index agree for that key. (Nested lock order is always forward bin ->
+ * index bin and the index functions never touch forward, so there is no deadlock.)
+ * Reads take no lock and are weakly consistent, like ConcurrentHashMap.containsValue(): a reader
+ * racing with a put may see the index before the new value is visible in get(), or the reverse.
+ * Null keys and values are rejected, as in ConcurrentHashMap.
+ */
+public class ConcurrentValueIndexedMap<K, V> extends AbstractComputeRoutedMap<K, V> {
+
+    private final ValueIndex<K, V> index = new ValueIndex<>(new ConcurrentHashMap<>(), ConcurrentHashMap::newKeySet);
+
+    @Override
+    public boolean containsValue(Object value) {
+        return index.contains(Objects.requireNonNull(value));
+    }
+
+    /** Keys currently mapped to value (a weakly consistent snapshot), empty if none. */
+    public Set<K> keysFor(Object value) {
+        return index.keysFor(Objects.requireNonNull(value));
+    }
+
+    /**
+     * forward.compute() with the index kept in sync under the key's bin lock.
+     * @return the previous value if returnPrevious, else the new one (compute/merge semantics)
+     */
+    @Override
+    V update(K key, BiFunction<? super K, ? super V, ? extends V> function, boolean returnPrevious) {
+        Object[] previous = new Object[1];
+        V now = forward.compute(key, (k, old) -> {
+            V next = function.apply(k, old);
+            previous[0] = old;
+            if (!Objects.equals(old, next)) {
+                if (next != null) {
+                    index.add(next, k);
+                }
+                if (old != null) {
+                    index.remove(old, k);
+                }
+            }
+            return next;
+        });
+        @SuppressWarnings("unchecked")
+        V old = (V) previous[0];
+        return returnPrevious ? old : now;
+    }
+}
@@ -0,0 +1,129 @@
+package map;
+
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ConcurrentHashMapDemo's counterMap increments at 1..128 threads: compute(), merge() and
+ * ConcurrentCounterMap.increment() on a few hot keys.
+ *
+ * Every thread increments the same HOT_KEYS keys round-robin, for secondsPerRun. Reported per
+ * variant: ops/second summed over all threads (higher is better) and bytes allocated per increment
+ * (ThreadMXBean.getThreadAllocatedBytes of each worker). After a run the counted total is checked
+ * against the ops done, so a lost update would show as an error.
+ *
+ * Run:  java map.CounterMapBenchmark [secondsPerRun] [hotKeys]   (defaults 1s, 4 keys)
+ * Not a JMH harness: relative numbers on one machine only, and the lock-vs-cells difference needs
+ * real cores - with fewer cores than threads, the threads mostly take turns instead of colliding.
+ */
+public class CounterMapBenchmark {
+
+    interface Counter {
+        void increment(String key);
+
+        long total();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        int hotKeys = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        String[] keys = new String[hotKeys];
+        for (int i = 0; i < hotKeys; i++) {
+            keys[i] = "counter" + i;
+        }
+
+        System.out.printf("%-8s %16s %8s %16s %8s %20s %8s%n", "threads",
+                "compute ops/s", "B/op", "merge ops/s", "B/op", "CounterMap ops/s", "B/op");
+        for (int threads = 1; threads <= 128; threads *= 2) {
+            StringBuilder line = new StringBuilder(String.format("%-8d", threads));
+            line.append(run(compute(), keys, threads, seconds, 16));
+            line.append(run(merge(), keys, threads, seconds, 16));
+            line.append(run(counterMap(), keys, threads, seconds, 20));
+            System.out.println(line);
+        }
+    }
+
+    static Counter compute() {
+        ConcurrentHashMap<String, Integer> counterMap = new ConcurrentHashMap<>();
+        return new Counter() {
+            public void increment(String key) {
+                counterMap.compute(key, (k, oldValue) -> oldValue == null ? 1 : oldValue + 1);
+            }
+
+            public long total() {
+                return counterMap.values().stream().mapToLong(Integer::longValue).sum();
+            }
+        };
+    }
+
+    static Counter merge() {
+        ConcurrentHashMap<String, Long> counterMap = new ConcurrentHashMap<>();
+        return new Counter() {
+            public void increment(String key) {
+                counterMap.merge(key, 1L, Long::sum);
+            }
+
+            public long total() {
+                return counterMap.values().stream().mapToLong(Long::longValue).sum();
+            }
+        };
+    }
+
+    static Counter counterMap() {
+        ConcurrentCounterMap<String> counterMap = new ConcurrentCounterMap<>();
+        return new Counter() {
+            public void increment(String key) {
+                counterMap.increment(key);
+            }
+
+            public long total() {
+                return counterMap.total();
+            }
+        };
+    }
+
+    static String run(Counter counter, String[] keys, int threads, long seconds, int width)
+            throws InterruptedException {
+        ThreadMXBean mx = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        LongAdder ops = new LongAdder();
+        LongAdder allocated = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                long id = Thread.currentThread().threadId();
+                long bytesBefore = mx.getThreadAllocatedBytes(id);
+                long local = 0;
+                int i = offset;
+                while ((local & 1023) != 0 || System.nanoTime() < deadline) {
+                    counter.increment(keys[i++ % keys.length]);
+                    local++;
+                }
+                allocated.add(mx.getThreadAllocatedBytes(id) - bytesBefore);
+                ops.add(local);
+                done.countDown();
+            });
+            worker.start();
+        }
+        start.countDown();
+        done.await();
+
+        long total = ops.sum();
+        if (counter.total() != total) {
+            throw new IllegalStateException("lost updates: counted " + counter.total() + " of " + total);
+        }
+        return String.format(" %" + width + ".0f %8.1f", total / (double) seconds, allocated.sum() / (double) total);
+    }
+}
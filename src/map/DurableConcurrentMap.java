@@ -0,0 +1,647 @@
+package map;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * ConcurrentHashMap that survives restarts: every mutation is appended to a write-ahead log in a
+ * directory, compacted into snapshots from time to time and replayed by open().
+ *
+ *  - Every write is a forward.compute() (see AbstractComputeRoutedMap) and the log record is
+ *    appended inside it, under the key's bin lock: per key the log has the same order as the map.
+ *    The record holds the resulting state (PUT key value / REMOVE key), not the operation, so
+ *    merge()/compute() results replay as they were and replaying a record twice does no harm.
+ *  - Group commit: appending only copies the record into a shared buffer. With Durability.SYNC a
+ *    writer then waits until its record is on disk; the first waiter writes the whole buffer -
+ *    everybody's records - and calls FileChannel.force once, the others wait for it. N concurrent
+ *    writers share one fsync instead of doing N, so throughput isn't capped at the disk's IOPS.
+ *    Durability.ASYNC doesn't wait: a background thread commits every COMMIT_INTERVAL_MS, so a
+ *    crash loses at most the last few milliseconds.
+ *  - Checkpoint (automatic once a log segment exceeds checkpointBytes, or checkpoint()): switch to
+ *    a new segment, wait until every write that logged into the old segment has also reached the
+ *    map, write all entries to snapshot-N.dat (via a temp file, fsync, atomic rename, fsync of the
+ *    directory), then delete older snapshots and segments. Writers keep going during the walk;
+ *    their records are in the new segment and are replayed on top of the snapshot. New segments
+ *    get a directory fsync too, so a crash can't lose a segment whose records were committed.
+ *  - open() replays the newest snapshot, then every segment from it on. Records carry a CRC32: a
+ *    record torn by a crash ends the replay of its segment. Other files in the directory are never
+ *    read or deleted.
+ * Null keys and values are rejected. A failed log write fails that write and all later ones.
+ */
+public class DurableConcurrentMap<K, V> extends AbstractComputeRoutedMap<K, V> implements Closeable {
+
+    /** Turns keys/values into bytes for the log and snapshots. */
+    public interface Codec<T> {
+        void write(DataOutput out, T value) throws IOException;
+
+        T read(DataInput in) throws IOException;
+
+        Codec<String> STRING = new Codec<>() {
+            public void write(DataOutput out, String value) throws IOException {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length); // not writeUTF: no 64 KB limit
+                out.write(bytes);
+            }
+
+            public String read(DataInput in) throws IOException {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+
+        Codec<Integer> INTEGER = new Codec<>() {
+            public void write(DataOutput out, Integer value) throws IOException {
+                out.writeInt(value);
+            }
+
+            public Integer read(DataInput in) throws IOException {
+                return in.readInt();
+            }
+        };
+
+        Codec<Long> LONG = new Codec<>() {
+            public void write(DataOutput out, Long value) throws IOException {
+                out.writeLong(value);
+            }
+
+            public Long read(DataInput in) throws IOException {
+                return in.readLong();
+            }
+        };
+    }
+
+    public enum Durability {
+        /** put() & co. return once the change is on disk (group commit). */
+        SYNC,
+        /** put() & co. return at once; the log is committed every COMMIT_INTERVAL_MS. */
+        ASYNC
+    }
+
+    static final long COMMIT_INTERVAL_MS = 10;
+    static final long DEFAULT_CHECKPOINT_BYTES = 64L << 20;
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte END = 3; // last record of a snapshot
+    private static final int STRIPES = 32; // in-flight counters, see enter()
+    private static final int PAD = 8;      // longs between two counters: one cache line each
+    // the only files we read or delete; anything else in dir is left alone
+    private static final Pattern FILE = Pattern.compile("(?:wal-(\\d{1,18})\\.log|snapshot-(\\d{1,18})\\.(?:dat|tmp))");
+
+    private final Path dir;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final Durability durability;
+    private final long checkpointBytes;
+    private final Log log;
+    private final ScheduledExecutorService background;
+    private final AtomicBoolean checkpointScheduled = new AtomicBoolean();
+    private final ReentrantLock checkpointLock = new ReentrantLock();
+    private final ThreadLocal<Encoder> encoders = ThreadLocal.withInitial(Encoder::new);
+    // writes in flight per epoch parity and stripe; a checkpoint waits for the old epoch to drain
+    private final AtomicLongArray inFlight = new AtomicLongArray(2 * STRIPES * PAD);
+    private volatile int epoch;
+    private volatile boolean closed;
+    private long segment; // number of the segment being appended to, guarded by checkpointLock
+
+    private DurableConcurrentMap(Path dir, Codec<K> keyCodec, Codec<V> valueCodec, Durability durability,
+                                 long checkpointBytes) {
+        this.dir = dir;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.durability = durability;
+        this.checkpointBytes = checkpointBytes;
+        this.log = new Log();
+        this.background = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "durable-map-" + dir.getFileName());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static <K, V> DurableConcurrentMap<K, V> open(Path dir, Codec<K> keyCodec, Codec<V> valueCodec)
+            throws IOException {
+        return open(dir, keyCodec, valueCodec, Durability.SYNC, DEFAULT_CHECKPOINT_BYTES);
+    }
+
+    /** Opens (or creates) the map stored in dir and replays it. */
+    public static <K, V> DurableConcurrentMap<K, V> open(Path dir, Codec<K> keyCodec, Codec<V> valueCodec,
+                                                         Durability durability, long checkpointBytes)
+            throws IOException {
+        Files.createDirectories(dir);
+        DurableConcurrentMap<K, V> map = new DurableConcurrentMap<>(dir, keyCodec, valueCodec, durability, checkpointBytes);
+        map.recover();
+        if (durability == Durability.ASYNC) {
+            map.background.scheduleWithFixedDelay(map::commitQuietly, COMMIT_INTERVAL_MS, COMMIT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+        return map;
+    }
+
+    /**
+     * forward.compute() with the resulting state logged inside it; waits for the commit if SYNC.
+     * @return the previous value if returnPrevious, else the new one (compute/merge semantics)
+     */
+    @Override
+    V update(K key, BiFunction<? super K, ? super V, ? extends V> function, boolean returnPrevious) {
+        if (closed) {
+            throw new IllegalStateException("closed");
+        }
+        Object[] previous = new Object[1];
+        long[] seq = new long[1];
+        int slot = enter();
+        V now;
+        try {
+            now = forward.compute(key, (k, old) -> {
+                V next = function.apply(k, old);
+                previous[0] = old;
+                if (next != old) {
+                    seq[0] = next != null ? log.append(encoders.get().put(k, next))
+                                          : old != null ? log.append(encoders.get().remove(k)) : 0;
+                }
+                return next;
+            });
+        } finally {
+            inFlight.decrementAndGet(slot);
+        }
+        if (seq[0] != 0) {
+            if (durability == Durability.SYNC) {
+                log.awaitDurable(seq[0]);
+            }
+            if (log.segmentBytes() > checkpointBytes && checkpointScheduled.compareAndSet(false, true)) {
+                background.execute(this::checkpointQuietly);
+            }
+        }
+        @SuppressWarnings("unchecked")
+        V old = (V) previous[0];
+        return returnPrevious ? old : now;
+    }
+
+    // Registers a write in the current epoch; re-checks, so a checkpoint that bumped the epoch in
+    // between is guaranteed to either wait for this write or have this write log into the new segment.
+    private int enter() {
+        int stripe = (int) (Thread.currentThread().threadId() & (STRIPES - 1));
+        while (true) {
+            int e = epoch;
+            int slot = ((e & 1) * STRIPES + stripe) * PAD;
+            inFlight.incrementAndGet(slot);
+            if (epoch == e) {
+                return slot;
+            }
+            inFlight.decrementAndGet(slot);
+        }
+    }
+
+    private void awaitDrained(int parity) {
+        for (int s = 0; s < STRIPES; s++) {
+            int slot = (parity * STRIPES + s) * PAD;
+            while (inFlight.get(slot) != 0) {
+                Thread.yield();
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- checkpoint / recovery
+
+    /** Writes a snapshot of the map and deletes the log it replaces; runs concurrently with writers. */
+    public void checkpoint() throws IOException {
+        checkpointLock.lock();
+        try {
+            long next = segment + 1;
+            int oldEpoch = epoch;
+            log.rotate(openSegment(next), () -> epoch = oldEpoch + 1);
+            segment = next;
+            awaitDrained(oldEpoch & 1); // every record of the old segments is now in forward
+
+            Path tmp = dir.resolve("snapshot-" + next + ".tmp");
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                Encoder encoder = new Encoder();
+                ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+                for (Map.Entry<K, V> e : forward.entrySet()) {
+                    buffer = write(out, buffer, encoder.put(e.getKey(), e.getValue()));
+                }
+                buffer = write(out, buffer, encoder.end());
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                out.force(true);
+            }
+            Files.move(tmp, dir.resolve("snapshot-" + next + ".dat"), StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(); // the rename itself must be durable before the old log goes
+            for (Path file : files()) {
+                if (number(file) < next) {
+                    Files.delete(file); // older snapshots and the segments this one replaces
+                }
+            }
+        } finally {
+            checkpointScheduled.set(false);
+            checkpointLock.unlock();
+        }
+    }
+
+    private void checkpointQuietly() {
+        try {
+            if (!closed) {
+                checkpoint();
+            }
+        } catch (IOException e) {
+            log.fail(e);
+        }
+    }
+
+    private void commitQuietly() {
+        try {
+            log.awaitDurable(log.appended());
+        } catch (UncheckedIOException ignored) {
+            // already recorded in log.failure, the next write reports it
+        }
+    }
+
+    private void recover() throws IOException {
+        for (Path file : files()) {
+            if (file.getFileName().toString().endsWith(".tmp")) { // snapshot-N.tmp, see files()
+                Files.delete(file); // checkpoint interrupted before its rename
+            }
+        }
+        TreeMap<Long, Path> snapshots = new TreeMap<>();
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        for (Path file : files()) {
+            String name = file.getFileName().toString();
+            if (name.startsWith("snapshot-") && name.endsWith(".dat")) {
+                snapshots.put(number(file), file);
+            } else if (name.startsWith("wal-") && name.endsWith(".log")) {
+                segments.put(number(file), file);
+            }
+        }
+        long from = snapshots.isEmpty() ? 0 : snapshots.lastKey();
+        for (Path stale : snapshots.headMap(from).values()) {
+            Files.delete(stale); // checkpoint crashed before cleaning up
+        }
+        for (Path stale : segments.headMap(from).values()) {
+            Files.delete(stale);
+        }
+        if (!snapshots.isEmpty()) {
+            replay(snapshots.lastEntry().getValue());
+        }
+        for (Map.Entry<Long, Path> e : segments.tailMap(from, true).entrySet()) {
+            replay(e.getValue());
+        }
+        segment = Math.max(from, segments.isEmpty() ? 0 : segments.lastKey()) + 1;
+        log.rotate(openSegment(segment), () -> {});
+    }
+
+    /** Applies the records of a snapshot or segment to forward, up to the first torn one. */
+    private void replay(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 20))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                long checksum;
+                byte[] payload;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt() & 0xFFFFFFFFL;
+                    if (length <= 0) {
+                        return;
+                    }
+                    payload = in.readNBytes(length);
+                } catch (EOFException e) {
+                    return;
+                }
+                crc.reset();
+                crc.update(payload);
+                if (payload.length != length || crc.getValue() != checksum) {
+                    return; // torn write at the end of the log
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                byte op = record.readByte();
+                if (op == END) {
+                    return;
+                }
+                K key = keyCodec.read(record);
+                if (op == PUT) {
+                    forward.put(key, valueCodec.read(record));
+                } else {
+                    forward.remove(key);
+                }
+            }
+        }
+    }
+
+    private FileChannel openSegment(long n) throws IOException {
+        FileChannel channel = FileChannel.open(dir.resolve("wal-" + n + ".log"), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        try {
+            syncDirectory(); // else a crash can lose the new file's directory entry with its fsynced records
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    // fsync of the directory: makes created, renamed and deleted entries durable (a no-op on Windows,
+    // which can't open a directory as a channel and doesn't need it).
+    private void syncDirectory() throws IOException {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            if (!System.getProperty("os.name").startsWith("Windows")) {
+                throw e;
+            }
+        }
+    }
+
+    /** The map's own files in dir: wal-N.log, snapshot-N.dat and snapshot-N.tmp. */
+    private List<Path> files() throws IOException {
+        try (var stream = Files.list(dir)) {
+            return new ArrayList<>(stream.filter(f -> FILE.matcher(f.getFileName().toString()).matches()).toList());
+        }
+    }
+
+    /** N of one of files(). */
+    private static long number(Path file) {
+        Matcher m = FILE.matcher(file.getFileName().toString());
+        if (!m.matches()) {
+            throw new IllegalArgumentException("not a log or snapshot file: " + file);
+        }
+        return Long.parseLong(m.group(1) != null ? m.group(1) : m.group(2));
+    }
+
+    private static ByteBuffer write(FileChannel out, ByteBuffer buffer, Record record) throws IOException {
+        if (buffer.remaining() < record.length) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+            if (buffer.capacity() < record.length) {
+                buffer = ByteBuffer.allocate(record.length);
+            }
+        }
+        buffer.put(record.bytes, 0, record.length);
+        return buffer;
+    }
+
+    /** Commits what is logged, stops the background thread and closes the log; the map stays readable. */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        background.shutdown();
+        try {
+            background.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+    }
+
+    /** fsyncs so far; appended records / fsyncs is the group commit's batch size. */
+    long syncs() {
+        return log.syncs;
+    }
+
+    long records() {
+        return log.appended();
+    }
+
+    // ---------------------------------------------------------------- records
+
+    static final class Record {
+        byte[] bytes;
+        int length;
+    }
+
+    /** Per-thread record builder: [int length][int crc32][op][key][value], reused for every write. */
+    final class Encoder {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final CRC32 crc = new CRC32();
+        private final Record record = new Record();
+
+        Record put(K key, V value) {
+            return encode(PUT, key, value);
+        }
+
+        Record remove(K key) {
+            return encode(REMOVE, key, null);
+        }
+
+        Record end() {
+            return encode(END, null, null);
+        }
+
+        private Record encode(byte op, K key, V value) {
+            try {
+                bytes.reset();
+                out.writeLong(0); // room for length and crc
+                out.writeByte(op);
+                if (key != null) {
+                    keyCodec.write(out, key);
+                }
+                if (value != null) {
+                    valueCodec.write(out, value);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // ByteArrayOutputStream doesn't throw
+            }
+            byte[] array = bytes.toByteArray();
+            int payload = array.length - 8;
+            crc.reset();
+            crc.update(array, 8, payload);
+            ByteBuffer.wrap(array).putInt(payload).putInt((int) crc.getValue());
+            record.bytes = array;
+            record.length = array.length;
+            return record;
+        }
+    }
+
+    /** The active log segment with group commit. */
+    static final class Log {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition flushed = lock.newCondition();
+        private byte[] pending = new byte[1 << 16];
+        private int pendingLength;
+        private byte[] spare = new byte[1 << 16];
+        private long appendedSeq;
+        private long durableSeq;
+        private boolean flushing;
+        private FileChannel channel;
+        private long segmentBytes;
+        private IOException failure;
+        volatile long syncs;
+
+        /** Copies the record into the pending batch. @return its sequence number for awaitDurable */
+        long append(Record record) {
+            lock.lock();
+            try {
+                if (failure != null) {
+                    throw new UncheckedIOException("log failed earlier", failure);
+                }
+                if (pendingLength + record.length > pending.length) {
+                    pending = Arrays.copyOf(pending, Math.max(2 * pending.length, pendingLength + record.length));
+                }
+                System.arraycopy(record.bytes, 0, pending, pendingLength, record.length);
+                pendingLength += record.length;
+                return ++appendedSeq;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long appended() {
+            lock.lock();
+            try {
+                return appendedSeq;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long segmentBytes() {
+            return segmentBytes; // racy read, only used to trigger a checkpoint
+        }
+
+        /** Returns once record seq is on disk; one waiter writes and fsyncs the batch for all. */
+        void awaitDurable(long seq) {
+            lock.lock();
+            try {
+                while (durableSeq < seq) {
+                    if (failure != null) {
+                        throw new UncheckedIOException("log failed", failure);
+                    }
+                    if (flushing) {
+                        flushed.awaitUninterruptibly();
+                        continue;
+                    }
+                    flushBatch();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Called with lock held; releases it for the write + force so appenders can fill the next batch.
+        private void flushBatch() {
+            flushing = true;
+            byte[] batch = pending;
+            int length = pendingLength;
+            long batchSeq = appendedSeq;
+            pending = spare;
+            pendingLength = 0;
+            FileChannel out = channel;
+            lock.unlock();
+            IOException error = null;
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch, 0, length);
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                out.force(false);
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                lock.lock();
+            }
+            spare = batch;
+            segmentBytes += length;
+            syncs++;
+            flushing = false;
+            if (error != null) {
+                failure = error;
+            } else {
+                durableSeq = batchSeq;
+            }
+            flushed.signalAll();
+        }
+
+        /** Commits the pending batch to the old segment, then appends go to next; switch runs under the lock. */
+        void rotate(FileChannel next, Runnable whileLocked) throws IOException {
+            lock.lock();
+            try {
+                while (flushing) {
+                    flushed.awaitUninterruptibly();
+                }
+                if (channel != null && appendedSeq > durableSeq) {
+                    flushBatch();
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                FileChannel old = channel;
+                channel = next;
+                segmentBytes = 0;
+                whileLocked.run();
+                if (old != null) {
+                    old.close();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void fail(IOException e) {
+            lock.lock();
+            try {
+                if (failure == null) {
+                    failure = e;
+                }
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void close() throws IOException {
+            lock.lock();
+            try {
+                while (flushing) {
+                    flushed.awaitUninterruptibly();
+                }
+                if (appendedSeq > durableSeq && failure == null) {
+                    flushBatch();
+                }
+                channel.close();
+                if (failure != null) {
+                    throw failure;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package map;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * DurableConcurrentMap's group commit against one fsync per write, then the replay on startup.
+ *
+ * Part 1: 1..64 threads merge(word, 1L, Long::sum) into a word counter for secondsPerRun:
+ *  - fsync/write   ConcurrentHashMap + a log that writes and forces every record under a lock
+ *  - SYNC          DurableConcurrentMap, Durability.SYNC: same guarantee, fsyncs shared (group commit)
+ *  - ASYNC         DurableConcurrentMap, Durability.ASYNC: committed every 10 ms, nobody waits
+ * Reported: writes/second (higher is better) and for SYNC the records per fsync, i.e. the batch size.
+ * fsync/write stays at the disk's fsync rate whatever the thread count; SYNC grows with the writers.
+ *
+ * Part 2: `entries` puts, close, time open() - once replaying only the log, once after checkpoint().
+ *
+ * Run:  java map.DurableMapBenchmark [secondsPerRun] [entries] [dir]   (defaults 1s, 1M, a temp dir)
+ * Not a JMH harness: relative numbers on one machine and one disk only (tmpfs fsyncs are free).
+ */
+public class DurableMapBenchmark {
+
+    static final int WORDS = 10_000;
+
+    interface Counter {
+        void increment(String word);
+    }
+
+    public static void main(String[] args) throws Exception {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        int entries = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        Path root = args.length > 2 ? Files.createDirectories(Path.of(args[2])) : Files.createTempDirectory("durable-map");
+
+        System.out.printf("%-8s %16s %16s %12s %16s%n", "threads", "fsync/write w/s", "SYNC w/s", "rec/fsync", "ASYNC w/s");
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            StringBuilder line = new StringBuilder(String.format("%-8d", threads));
+
+            Path dir = Files.createDirectories(root.resolve("naive"));
+            try (FileChannel channel = FileChannel.open(dir.resolve("wal.log"), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                line.append(String.format(" %16.0f", run(fsyncPerWrite(channel), threads, seconds)));
+            }
+            delete(dir);
+
+            dir = root.resolve("sync");
+            try (DurableConcurrentMap<String, Long> map = open(dir, DurableConcurrentMap.Durability.SYNC)) {
+                long syncs = map.syncs();
+                long records = map.records();
+                line.append(String.format(" %16.0f", run(word -> map.merge(word, 1L, Long::sum), threads, seconds)));
+                line.append(String.format(" %12.1f", (map.records() - records) / (double) Math.max(1, map.syncs() - syncs)));
+            }
+            delete(dir);
+
+            dir = root.resolve("async");
+            try (DurableConcurrentMap<String, Long> map = open(dir, DurableConcurrentMap.Durability.ASYNC)) {
+                line.append(String.format(" %16.0f", run(word -> map.merge(word, 1L, Long::sum), threads, seconds)));
+            }
+            delete(dir);
+            System.out.println(line);
+        }
+
+        Path dir = root.resolve("replay");
+        try (DurableConcurrentMap<String, Long> map = open(dir, DurableConcurrentMap.Durability.ASYNC)) {
+            for (long i = 0; i < entries; i++) {
+                map.put("key" + i, i);
+            }
+            map.replaceAll((k, v) -> v + 1); // a second record per key: replay from the log reads both
+        }
+        System.out.printf("%nopen() with %d entries: log only %.0f ms", entries, timeOpen(dir, entries));
+        try (DurableConcurrentMap<String, Long> map = open(dir, DurableConcurrentMap.Durability.ASYNC)) {
+            map.checkpoint();
+        }
+        System.out.printf(", after checkpoint %.0f ms%n", timeOpen(dir, entries));
+        delete(dir);
+        if (args.length <= 2) {
+            Files.deleteIfExists(root);
+        }
+    }
+
+    static DurableConcurrentMap<String, Long> open(Path dir, DurableConcurrentMap.Durability durability)
+            throws IOException {
+        return DurableConcurrentMap.open(dir, DurableConcurrentMap.Codec.STRING, DurableConcurrentMap.Codec.LONG,
+                durability, DurableConcurrentMap.DEFAULT_CHECKPOINT_BYTES);
+    }
+
+    static double timeOpen(Path dir, int entries) throws IOException {
+        long start = System.nanoTime();
+        try (DurableConcurrentMap<String, Long> map = open(dir, DurableConcurrentMap.Durability.ASYNC)) {
+            long elapsed = System.nanoTime() - start;
+            if (map.size() != entries || map.get("key0") != 1L) {
+                throw new IllegalStateException("replayed " + map.size() + " entries, key0=" + map.get("key0"));
+            }
+            return elapsed / 1e6;
+        }
+    }
+
+    // What a straightforward WAL does: one write + force per mutation, serialized by a lock.
+    static Counter fsyncPerWrite(FileChannel channel) {
+        ConcurrentHashMap<String, Long> map = new ConcurrentHashMap<>();
+        Object lock = new Object();
+        return word -> {
+            Long value = map.merge(word, 1L, Long::sum);
+            ByteBuffer record = ByteBuffer.wrap((word + '=' + value + '\n').getBytes(StandardCharsets.UTF_8));
+            synchronized (lock) {
+                try {
+                    channel.write(record);
+                    channel.force(false);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    static double run(Counter counter, int threads, long seconds) throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 7919;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                long local = 0;
+                int i = offset;
+                // deadline checked on every write: a write can take milliseconds here
+                while (System.nanoTime() < deadline) {
+                    counter.increment("word" + (i++ % WORDS));
+                    local++;
+                }
+                ops.add(local);
+                done.countDown();
+            });
+            worker.start();
+        }
+        start.countDown();
+        done.await();
+        return ops.sum() / (double) seconds;
+    }
+
+    static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package map;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.Vector;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * Capacity planning numbers: how many bytes does each collection used in the list and map packages
+ * cost per element, at 10, 10K and 10M elements? Measured with ObjectFootprint (reflective graph walk,
+ * compressed oops and alignment taken from the running JVM).
+ *
+ * Only the collection's own structure is counted (tables, nodes, arrays); the elements themselves are
+ * excluded, since they cost the same in every collection. Maps use each element as key and value.
+ * The second table is HashMap<Student, Integer> at the load factors of StudentHashMap (0.8) and the
+ * default (0.75), plus 0.5 and 1.0 - there the Student keys are excluded too; one Student alone is
+ * printed for reference.
+ *
+ * Run:  java -Xmx6g --add-opens java.base/java.util=ALL-UNNAMED
+ *            --add-opens java.base/java.util.concurrent=ALL-UNNAMED
+ *            --add-opens java.base/java.util.concurrent.locks=ALL-UNNAMED
+ *            --add-opens java.base/java.lang=ALL-UNNAMED --add-opens java.base/java.lang.ref=ALL-UNNAMED
+ *            map.FootprintReport [sizes...]
+ * Without --add-opens the rows are marked "*" (only the top level object could be measured).
+ * Rows that don't fit into the heap print "OOM" instead; raise -Xmx or pass smaller sizes.
+ */
+public class FootprintReport {
+
+    static final float[] LOAD_FACTORS = {0.5f, 0.75f, 0.8f, 1.0f};
+    static final Set<String> NOT_WALKED = new TreeSet<>();
+
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{10, 10_000, 10_000_000};
+
+        Map<String, Function<Integer[], Object>> collections = new LinkedHashMap<>();
+        collections.put("HashMap", e -> fill(new HashMap<>(), e));
+        collections.put("LinkedHashMap", e -> fill(new LinkedHashMap<>(), e));
+        collections.put("CompactOrderedMap", e -> fill(new CompactOrderedMap<>(), e));
+        collections.put("TreeMap", e -> fill(new TreeMap<>(), e));
+        collections.put("Hashtable", e -> fill(new Hashtable<>(), e));
+        collections.put("IdentityHashMap", e -> fill(new IdentityHashMap<>(), e));
+        collections.put("WeakHashMap", e -> fill(new WeakHashMap<>(), e));
+        collections.put("ConcurrentHashMap", e -> fill(new ConcurrentHashMap<>(), e));
+        collections.put("ArrayList", e -> addAll(new ArrayList<>(), e));
+        collections.put("LinkedList", e -> addAll(new LinkedList<>(), e));
+        collections.put("Vector", e -> addAll(new Vector<>(), e));
+        collections.put("Stack", e -> addAll(new Stack<>(), e));
+        collections.put("ArrayDeque", e -> addAll(new ArrayDeque<>(), e));
+        collections.put("CopyOnWriteArrayList", e -> new CopyOnWriteArrayList<>(Arrays.asList(e))); // add() copies: O(n^2)
+
+        System.out.println("Layout: " + ObjectFootprint.describeLayout());
+        System.out.printf("%-22s %11s %15s %10s %12s%n", "collection", "elements", "bytes", "B/element", "objects");
+        for (int size : sizes) {
+            Integer[] elements = elements(size);
+            for (Map.Entry<String, Function<Integer[], Object>> c : collections.entrySet()) {
+                print(c.getKey(), size, () -> ObjectFootprint.measure(c.getValue().apply(elements), Arrays.asList(elements)));
+            }
+        }
+
+        System.out.println();
+        System.out.println("HashMap<Student, Integer> by load factor (StudentHashMap uses 0.8), one Student = "
+                + ObjectFootprint.measure(new Student(101, "Alice")));
+        System.out.printf("%-22s %11s %15s %10s %12s%n", "load factor", "elements", "bytes", "B/element", "objects");
+        for (int size : sizes) {
+            for (float loadFactor : LOAD_FACTORS) {
+                print("HashMap lf=" + loadFactor, size, () -> {
+                    List<Object> excluded = new ArrayList<>(2 * size);
+                    Map<Student, Integer> marks = new HashMap<>(12, loadFactor); // initial capacity as in StudentHashMap
+                    for (int i = 0; i < size; i++) {
+                        Student student = new Student(i, "s" + i);
+                        Integer mark = i % 101; // Integer cache: shared, like real marks would be
+                        marks.put(student, mark);
+                        excluded.add(student);
+                        excluded.add(mark);
+                    }
+                    return ObjectFootprint.measure(marks, excluded);
+                });
+            }
+        }
+        if (!NOT_WALKED.isEmpty()) {
+            System.out.println("* incomplete, fields not readable (add --add-opens for their packages): " + NOT_WALKED);
+        }
+    }
+
+    interface Measurement {
+        ObjectFootprint.Footprint run();
+    }
+
+    static void print(String name, int size, Measurement measurement) {
+        try {
+            ObjectFootprint.Footprint footprint = measurement.run();
+            NOT_WALKED.addAll(footprint.inaccessible);
+            System.out.printf("%-22s %11d %15d %10.1f %12d%s%n", name, size, footprint.bytes,
+                    footprint.bytes / (double) size, footprint.objects, footprint.complete() ? "" : " *");
+        } catch (OutOfMemoryError e) {
+            System.out.printf("%-22s %11d %15s%n", name, size, "OOM");
+        }
+    }
+
+    static Integer[] elements(int size) {
+        Integer[] elements = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            elements[i] = i;
+        }
+        return elements;
+    }
+
+    static <C extends java.util.Collection<Integer>> C addAll(C collection, Integer[] elements) {
+        for (Integer e : elements) {
+            collection.add(e); // one by one: capacity grows like it does in real code
+        }
+        return collection;
+    }
+
+    static <M extends Map<Integer, Integer>> M fill(M map, Integer[] elements) {
+        for (Integer e : elements) {
+            map.put(e, e);
+        }
+        return map;
+    }
+}
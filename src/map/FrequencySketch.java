@@ -0,0 +1,92 @@
+package map;
+
+import java.util.Objects;
+
+/**
+ * Count-Min sketch of 4-bit counters used by {@link LRUCache.EvictionPolicy#TINY_LFU} to estimate
+ * how often a key has been seen recently.
+ *
+ *  - Memory: one long (16 counters) per expected entry -> ~8 bytes/entry, no per-key objects.
+ *  - Each key maps to 4 counters (one per hash seed) in 4 different longs; the estimate is the
+ *    minimum of the 4 (collisions can only over-count, never under-count).
+ *  - Counters saturate at 15. After {@code sampleSize} increments every counter is halved ("aging"),
+ *    so keys that were popular a long time ago slowly lose their advantage.
+ */
+final class FrequencySketch {
+
+    static final long[] SEED = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    static final long RESET_MASK = 0x7777777777777777L; // clears the bit shifted in from the next counter
+    static final long ONE_MASK = 0x1111111111111111L;   // low bit of every counter
+
+    final long[] table;
+    final int tableMask;
+    final int sampleSize;
+    int size; // increments since the last reset
+
+    FrequencySketch(int maximumSize) {
+        int length = Math.max(8, Integer.highestOneBit(Math.max(1, maximumSize) - 1) << 1);
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = 10 * length;
+    }
+
+    /** Estimated number of times {@code key} was seen since it was last aged (0..15). */
+    int frequency(Object key) {
+        int hash = spread(Objects.hashCode(key));
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /** Records one more occurrence of {@code key}, aging the whole sketch every sampleSize increments. */
+    void increment(Object key) {
+        int hash = spread(Objects.hashCode(key));
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) { // saturate at 15
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /** Halves every counter. Odd counters lose their low bit, which the size estimate accounts for. */
+    void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size - (odd >>> 2)) >>> 1;
+    }
+
+    int indexOf(int item, int i) {
+        long hash = (item + SEED[i]) * SEED[i];
+        hash += hash >>> 32;
+        return ((int) hash) & tableMask;
+    }
+
+    // Extra mixing: keys like Integer have hashCode() == value, which would cluster in the table.
+    static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
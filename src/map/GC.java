@@ -39,6 +39,9 @@ public class GC {
     public static void main(String[] args) {
         Phone phone1=new Phone("Apple","iphone 17 pro max"); // here we are creating an object and assign a memory allocation in heap memory, and phone1 is the reference which is storing the memory address
         System.out.println(phone1);
+        // how much heap does phone1 keep alive? the Phone object + its two Strings (+ their byte[]s)
+        // (java --add-opens java.base/java.lang=ALL-UNNAMED to look inside String, see FootprintReport for collections)
+        System.out.println("phone1 retains " + ObjectFootprint.measure(phone1) + ", " + ObjectFootprint.describeLayout());
         // now if we make phone1 as null
         phone1=null; // then the allocated memory will be never used, that will be wasted
         // now garbage collection comes to the picture
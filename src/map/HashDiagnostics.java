@@ -0,0 +1,324 @@
+package map;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InaccessibleObjectException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * How well do a key type's hashCode() values spread over a HashMap / ConcurrentHashMap table?
+ *
+ * Both maps pick the bucket as (h ^ (h >>> 16)) & (tableLength - 1). A bucket holding 8+ entries
+ * (in a table of 64+ buckets) is turned into a red-black tree ("treeified"); for keys that are not
+ * Comparable that tree can't order colliding keys and lookups degrade towards a scan.
+ *
+ *  - analyze(map): all keys of a map, placed exactly as the map places them. The real table length
+ *    and the real tree bins are read by reflection when java.util is opened
+ *    (--add-opens java.base/java.util=ALL-UNNAMED and .../java.util.concurrent=ALL-UNNAMED);
+ *    otherwise the table length is estimated from size() and tree bins are simulated, and the report
+ *    says so (a map that grew and shrank keeps its big table, the estimate can be far off).
+ *  - sample(map, maxKeys): cheap mode for live maps. HashMap/ConcurrentHashMap iteration visits buckets
+ *    in index order, so the first maxKeys keys are complete chains of the first buckets: their
+ *    lengths are exact, only fewer buckets are looked at. O(maxKeys), safe on a ConcurrentHashMap
+ *    while it's being used. Only for exactly HashMap or ConcurrentHashMap (a LinkedHashMap iterates
+ *    in insertion order) and only with the real table length readable, else IllegalArgumentException
+ *    / IllegalStateException: a guessed length puts keys into the wrong buckets.
+ *  - analyzeKeys(keys): a key sample placed into a table sized like HashMap would size it.
+ *  - avalanche(keyFactory, samples): flips each bit of an int that the key is built from and checks
+ *    that each hash bit then changes with probability 1/2 (raw hashCode() and after the spread).
+ */
+public final class HashDiagnostics {
+
+    static final int TREEIFY_THRESHOLD = 8;
+    static final int MIN_TREEIFY_CAPACITY = 64;
+
+    private HashDiagnostics() {
+    }
+
+    /** Bucket statistics of one (real or simulated) table. */
+    public static final class Report {
+        final String source;
+        final int tableLength;
+        final boolean tableLengthEstimated; // analyze() without access to the real table
+        final int bucketsExamined;
+        final long entries;
+        final long[] chainLengths;   // chainLengths[n] = buckets holding n entries
+        final int maxChain;
+        final int treeifiedBins;     // bins with >= 8 entries in a table of >= 64 (what HashMap would treeify)
+        final int actualTreeBins;    // read from the table, -1 if not readable
+        final boolean comparableKeys;
+        final double worstBitBias;   // max |P(bit = 1) - 0.5| over the bucket index bits of the spread hash
+
+        Report(String source, int tableLength, boolean tableLengthEstimated, int bucketsExamined, long entries,
+               long[] chainLengths, int treeifiedBins, int actualTreeBins, boolean comparableKeys, double worstBitBias) {
+            this.source = source;
+            this.tableLength = tableLength;
+            this.tableLengthEstimated = tableLengthEstimated;
+            this.bucketsExamined = bucketsExamined;
+            this.entries = entries;
+            this.chainLengths = chainLengths;
+            int max = 0;
+            for (int n = 0; n < chainLengths.length; n++) {
+                if (chainLengths[n] > 0) max = n;
+            }
+            this.maxChain = max;
+            this.treeifiedBins = treeifiedBins;
+            this.actualTreeBins = actualTreeBins;
+            this.comparableKeys = comparableKeys;
+            this.worstBitBias = worstBitBias;
+        }
+
+        /** True if the map's table wasn't readable and tableLength is only what size() suggests. */
+        public boolean isTableLengthEstimated() {
+            return tableLengthEstimated;
+        }
+
+        public int getMaxChainLength() {
+            return maxChain;
+        }
+
+        public int getTreeifiedBins() {
+            return actualTreeBins >= 0 ? actualTreeBins : treeifiedBins;
+        }
+
+        /** Fraction of examined buckets that are empty. */
+        public double getEmptyFraction() {
+            return bucketsExamined == 0 ? 0.0 : chainLengths[0] / (double) bucketsExamined;
+        }
+
+        /** Fraction of empty buckets a perfectly random hash would leave: e^-load (Poisson). */
+        public double getIdealEmptyFraction() {
+            return bucketsExamined == 0 ? 0.0 : Math.exp(-entries / (double) bucketsExamined);
+        }
+
+        /** Occupancy histogram: element n = number of buckets holding n entries. */
+        public long[] getChainLengthHistogram() {
+            return chainLengths.clone();
+        }
+
+        public double getWorstBitBias() {
+            return worstBitBias;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(source).append(": ").append(entries).append(" entries in ").append(bucketsExamined)
+                    .append(bucketsExamined == tableLength ? "" : " of " + tableLength).append(" buckets")
+                    .append(tableLengthEstimated ? " ESTIMATED from size() - real table not readable, may be larger" : "")
+                    .append(String.format(" (load %.2f)%n", entries / (double) Math.max(1, bucketsExamined)));
+            sb.append(String.format("  empty buckets %.1f%% (random hash: %.1f%%), max chain %d, tree bins %d%s%s%n",
+                    100 * getEmptyFraction(), 100 * getIdealEmptyFraction(), maxChain, getTreeifiedBins(),
+                    actualTreeBins >= 0 ? "" : " (simulated)",
+                    getTreeifiedBins() > 0 && !comparableKeys ? " - keys not Comparable, tree lookups degrade" : ""));
+            sb.append(String.format("  worst bucket index bit bias %.3f (0 = each index bit is 1 half the time)%n", worstBitBias));
+            sb.append("  chain length -> buckets:");
+            for (int n = 0; n < chainLengths.length; n++) {
+                if (chainLengths[n] > 0) sb.append(' ').append(n).append('=').append(chainLengths[n]);
+            }
+            return sb.toString();
+        }
+    }
+
+    /** Avalanche quality: P(output bit changes) when one input bit is flipped; ideal 0.5 everywhere. */
+    public static final class AvalancheReport {
+        final double rawMean, rawWorst, spreadMean, spreadWorst;
+
+        AvalancheReport(double rawMean, double rawWorst, double spreadMean, double spreadWorst) {
+            this.rawMean = rawMean;
+            this.rawWorst = rawWorst;
+            this.spreadMean = spreadMean;
+            this.spreadWorst = spreadWorst;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("avalanche hashCode(): mean %.3f, worst bit pair bias %.3f | after HashMap spread: mean %.3f, worst %.3f",
+                    rawMean, rawWorst, spreadMean, spreadWorst);
+        }
+    }
+
+    // ---------------------------------------------------------------- entry points
+
+    public static Report analyze(Map<?, ?> map) {
+        Object[] table = table(map);
+        int tableLength = table != null ? table.length : hashMapTableLength(map.size());
+        int actualTreeBins = -1;
+        if (table != null) {
+            actualTreeBins = 0;
+            for (Object bin : table) {
+                if (bin != null && isTreeBin(bin)) actualTreeBins++;
+            }
+        }
+        return place(map.getClass().getSimpleName(), new ArrayList<>(map.keySet()), tableLength, table == null,
+                tableLength, actualTreeBins);
+    }
+
+    /**
+     * Looks at only the first maxKeys keys (complete buckets in index order), see class comment.
+     * @throws IllegalArgumentException if map isn't exactly a HashMap or ConcurrentHashMap
+     * @throws IllegalStateException if its table can't be read (java.util not opened)
+     */
+    public static Report sample(Map<?, ?> map, int maxKeys) {
+        if (map.getClass() != java.util.HashMap.class && map.getClass() != ConcurrentHashMap.class) {
+            throw new IllegalArgumentException("sample() needs bucket index iteration order, i.e. exactly a HashMap"
+                    + " or ConcurrentHashMap, not " + map.getClass().getName() + "; use analyze()");
+        }
+        Object[] table = table(map);
+        if (table == null) {
+            throw new IllegalStateException("sample() needs the real table length: run with --add-opens"
+                    + " java.base/java.util=ALL-UNNAMED --add-opens java.base/java.util.concurrent=ALL-UNNAMED");
+        }
+        int tableLength = table.length;
+        int mask = tableLength - 1;
+        List<Object> keys = new ArrayList<>(maxKeys);
+        int lastBucket = -1, buckets = 0;
+        Iterator<?> it = map.keySet().iterator();
+        while (it.hasNext()) {
+            Object key = it.next();
+            int bucket = spread(key) & mask;
+            if (keys.size() >= maxKeys && bucket != lastBucket) {
+                buckets = bucket; // buckets [0, bucket) are complete
+                break;
+            }
+            keys.add(key);
+            lastBucket = bucket;
+            buckets = tableLength;
+        }
+        int examined = Math.max(1, buckets);
+        List<Object> complete = new ArrayList<>(keys.size());
+        for (Object key : keys) {
+            if ((spread(key) & mask) < examined) complete.add(key);
+        }
+        return place(map.getClass().getSimpleName() + " (sampled)", complete, tableLength, false, examined, -1);
+    }
+
+    public static Report analyzeKeys(Collection<?> keys) {
+        return analyzeKeys(keys, hashMapTableLength(keys.size()));
+    }
+
+    public static Report analyzeKeys(Collection<?> keys, int tableLength) {
+        if (Integer.bitCount(tableLength) != 1) {
+            throw new IllegalArgumentException("tableLength must be a power of two: " + tableLength);
+        }
+        return place("keys", new ArrayList<>(keys), tableLength, false, tableLength, -1);
+    }
+
+    /**
+     * Builds keys from random ints, flips each of the 32 input bits and records which hash bits
+     * change. keyFactory should depend on the int in a realistic way, e.g. id -> new Student(id, "Alice").
+     */
+    public static AvalancheReport avalanche(IntFunction<?> keyFactory, int samples) {
+        long[][] raw = new long[32][32], spread = new long[32][32];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int s = 0; s < samples; s++) {
+            int input = random.nextInt();
+            int h = keyFactory.apply(input).hashCode();
+            for (int bit = 0; bit < 32; bit++) {
+                int flipped = keyFactory.apply(input ^ (1 << bit)).hashCode();
+                count(raw[bit], h ^ flipped);
+                count(spread[bit], (h ^ (h >>> 16)) ^ (flipped ^ (flipped >>> 16)));
+            }
+        }
+        double[] r = summarize(raw, samples), sp = summarize(spread, samples);
+        return new AvalancheReport(r[0], r[1], sp[0], sp[1]);
+    }
+
+    // ---------------------------------------------------------------- placement
+
+    static int spread(Object key) {
+        int h = key == null ? 0 : key.hashCode();
+        return h ^ (h >>> 16); // HashMap; ConcurrentHashMap also clears the sign bit, same bucket
+    }
+
+    private static Report place(String source, List<?> keys, int tableLength, boolean estimated, int examined,
+                                int actualTreeBins) {
+        int[] bucketSizes = new int[examined];
+        int indexBits = 31 - Integer.numberOfLeadingZeros(examined); // sample: only the low bits vary
+        int[] ones = new int[indexBits];
+        int counted = 0;
+        boolean comparable = true;
+        for (Object key : keys) {
+            int index = spread(key) & (tableLength - 1);
+            bucketSizes[index]++;
+            if (index < 1 << indexBits) { // sample: a power-of-two prefix, so every bit can be balanced
+                counted++;
+                for (int bit = 0; bit < indexBits; bit++) {
+                    ones[bit] += (index >>> bit) & 1;
+                }
+            }
+            comparable &= key instanceof Comparable;
+        }
+        int longest = 0;
+        for (int size : bucketSizes) longest = Math.max(longest, size);
+        long[] histogram = new long[longest + 1];
+        int treeified = 0;
+        for (int size : bucketSizes) {
+            histogram[size]++;
+            if (size >= TREEIFY_THRESHOLD && tableLength >= MIN_TREEIFY_CAPACITY) treeified++;
+        }
+        double worstBias = 0;
+        for (int bit = 0; bit < indexBits && counted > 0; bit++) {
+            worstBias = Math.max(worstBias, Math.abs(ones[bit] / (double) counted - 0.5));
+        }
+        return new Report(source, tableLength, estimated, examined, keys.size(), histogram, treeified,
+                actualTreeBins, comparable, worstBias);
+    }
+
+    private static void count(long[] changes, int diff) {
+        for (int out = 0; out < 32; out++) {
+            changes[out] += (diff >>> out) & 1;
+        }
+    }
+
+    // {mean, worst |p - 0.5|} over all (input bit, output bit) pairs
+    private static double[] summarize(long[][] changes, int samples) {
+        double sum = 0, worst = 0;
+        for (long[] row : changes) {
+            for (long c : row) {
+                double p = c / (double) samples;
+                sum += p;
+                worst = Math.max(worst, Math.abs(p - 0.5));
+            }
+        }
+        return new double[]{sum / (32 * 32), worst};
+    }
+
+    // ---------------------------------------------------------------- table access
+
+    // null when the map isn't a HashMap/ConcurrentHashMap or java.util isn't opened to us
+    private static Object[] table(Map<?, ?> map) {
+        Class<?> type = map instanceof ConcurrentHashMap ? ConcurrentHashMap.class
+                : map instanceof java.util.HashMap ? java.util.HashMap.class : null;
+        if (type == null) {
+            return null;
+        }
+        try {
+            Field table = type.getDeclaredField("table");
+            table.setAccessible(true);
+            return (Object[]) table.get(map);
+        } catch (InaccessibleObjectException | ReflectiveOperationException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static boolean isTreeBin(Object bin) {
+        String name = bin.getClass().getName();
+        return name.equals("java.util.HashMap$TreeNode") || name.equals("java.util.concurrent.ConcurrentHashMap$TreeBin");
+    }
+
+    // table length HashMap ends up with after inserting n keys with the default load factor
+    static int hashMapTableLength(int n) {
+        int length = 16;
+        while (n > length * 0.75 && length < (1 << 30)) {
+            length <<= 1;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,66 @@
+package map;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Run with --add-opens java.base/java.util=ALL-UNNAMED --add-opens java.base/java.util.concurrent=ALL-UNNAMED
+ * to see the real table lengths and tree bins (without: estimated / simulated).
+ */
+public class HashDiagnosticsDemo {
+
+    // comparator.Student sorts by GPA; if it got hashCode() = Double.hashCode(gpa), like this key:
+    // GPAs with two decimals are only a few hundred distinct values, so thousands of students share a bucket
+    record Gpa(String name, double gpa) implements Comparable<Gpa> {
+        @Override
+        public int hashCode() {
+            return Double.hashCode(gpa);
+        }
+
+        @Override
+        public int compareTo(Gpa other) {
+            return Double.compare(gpa, other.gpa);
+        }
+    }
+
+    public static void main(String[] args) {
+        // 1. map.Student (id + name) keys, as in StudentHashMap
+        Map<Student, Integer> studentMarks = new HashMap<>(12, 0.8f);
+        for (int id = 0; id < 100_000; id++) {
+            studentMarks.put(new Student(id, "student-" + id), id % 101);
+        }
+        System.out.println(HashDiagnostics.analyze(studentMarks));
+
+        // 2. GPA keys: few distinct hash values -> long chains, tree bins
+        Map<Gpa, Integer> byGpa = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            byGpa.put(new Gpa("student-" + i, (i % 401) / 100.0), i);
+        }
+        System.out.println(HashDiagnostics.analyze(byGpa));
+
+        // 3. A key sample, no map needed
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            ids.add(i << 16); // only high bits vary; HashMap's spread (h ^ h >>> 16) rescues this one
+        }
+        System.out.println(HashDiagnostics.analyzeKeys(ids));
+
+        // 4. Cheap sampling of a big live map: only the first 10_000 keys are looked at
+        ConcurrentHashMap<Student, Integer> live = new ConcurrentHashMap<>();
+        for (int id = 0; id < 1_000_000; id++) {
+            live.put(new Student(id, "s" + id), id);
+        }
+        try {
+            System.out.println(HashDiagnostics.sample(live, 10_000));
+        } catch (IllegalStateException e) {
+            System.out.println("sample() skipped: " + e.getMessage());
+        }
+
+        // 5. Avalanche: does changing one bit of the id change about half of the hash bits?
+        System.out.println("Student(id, \"Alice\") " + HashDiagnostics.avalanche(id -> new Student(id, "Alice"), 10_000));
+        System.out.println("Integer              " + HashDiagnostics.avalanche(id -> id, 10_000));
+    }
+}
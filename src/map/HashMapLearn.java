@@ -82,5 +82,13 @@ public class HashMapLearn {
         // 13. clear()
         map.clear(); // {}
 
+        // Note: with int keys every entry above costs an Integer box + a Node (~50 bytes/entry).
+        // For big int -> V maps use IntObjectMap (or IntIntMap): flat int[] keys, no boxing.
+        IntObjectMap<String> byId = new IntObjectMap<>();
+        byId.put(1, "Rupam");
+        byId.put(2, "Subham");
+        byId.putIfAbsent(2, "Ankit"); // present, so no put
+        System.out.println(byId.getOrDefault(3, "Unknown")); // Unknown
+        byId.forEach((id, name) -> System.out.println(id + " : " + name)); // id is a plain int
     }
 }
@@ -159,5 +159,18 @@ public class HashTableDemo {
         }
         System.out.println("ConcurrentHashMap after concurrent modifications: " + safe);
 
+        // 14) Legacy code that must keep the Hashtable type: ConcurrentHashtable is a Hashtable backed by
+        // a ConcurrentHashMap -> same nulls rule and Enumerations, no single monitor
+        // (see HashtableContentionBenchmark; note synchronized (table) blocks no longer exclude writers)
+        Hashtable<String, Integer> striped = new ConcurrentHashtable<>();
+        striped.put("one", 1);
+        striped.merge("one", 1, Integer::sum); // atomic per key, like every single operation
+        // striped.put(null, 10);              // ❌ still throws NPE
+        Enumeration<String> stripedKeys = striped.keys();
+        while (stripedKeys.hasMoreElements()) {
+            String k = stripedKeys.nextElement();
+            System.out.println("ConcurrentHashtable " + k + " = " + striped.get(k)); // one = 2
+        }
+
     }
 }
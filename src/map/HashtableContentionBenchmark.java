@@ -0,0 +1,88 @@
+package map;
+
+import java.util.Hashtable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HashTableDemo's t1/t2 concurrent puts, scaled to 1..64 threads: Hashtable vs ConcurrentHashtable.
+ * Both are used through a Hashtable-typed variable, exactly like the legacy call sites.
+ *
+ * Workload: thread n puts "tn-i" keys (its own keys, as in the demo) and, with getPercent > 0, also
+ * reads random other threads' keys. Each thread cycles over KEYS_PER_THREAD keys, so after the first
+ * lap the puts overwrite and the table size stays fixed.
+ *
+ * Run:  java map.HashtableContentionBenchmark [secondsPerRun] [getPercent]   (defaults 1s, 0% = puts only)
+ * Numbers are ops/second summed over all threads (higher is better). Not a JMH harness, and the
+ * speedup only shows with as many cores as threads: on one core both maps are serialized anyway.
+ */
+public class HashtableContentionBenchmark {
+
+    static final int KEYS_PER_THREAD = 1 << 14;
+
+    public static void main(String[] args) throws InterruptedException {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        int getPercent = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+
+        System.out.printf("%-8s %20s %20s %8s%n", "threads", "Hashtable", "ConcurrentHashtable", "speedup");
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            String[][] keys = keys(threads);
+            double a = run(new Hashtable<>(), keys, getPercent, seconds);
+            double b = run(new ConcurrentHashtable<>(), keys, getPercent, seconds);
+            System.out.printf("%-8d %20.0f %20.0f %7.2fx%n", threads, a, b, b / a);
+        }
+    }
+
+    static double run(Hashtable<String, Integer> ht, String[][] keys, int getPercent, long seconds)
+            throws InterruptedException {
+        int threads = keys.length;
+        LongAdder ops = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        for (int t = 0; t < threads; t++) {
+            String[] own = keys[t];
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                long local = 0;
+                int i = 0;
+                int seed = own.hashCode();
+                while ((local & 1023) != 0 || System.nanoTime() < deadline) {
+                    seed ^= seed << 13; // xorshift: cheap per-thread randomness without a shared object
+                    seed ^= seed >>> 17;
+                    seed ^= seed << 5;
+                    if (Math.floorMod(seed, 100) < getPercent) {
+                        String[] other = keys[Math.floorMod(seed >>> 8, threads)];
+                        ht.get(other[(seed >>> 16) & (KEYS_PER_THREAD - 1)]);
+                    } else {
+                        ht.put(own[i & (KEYS_PER_THREAD - 1)], i);
+                        i++;
+                    }
+                    local++;
+                }
+                ops.add(local);
+                done.countDown();
+            });
+            worker.start();
+        }
+        start.countDown();
+        done.await();
+        return ops.sum() / (double) seconds;
+    }
+
+    // "t1-5", "t1-6", ... as in HashTableDemo; built up front so the loop measures only the table.
+    static String[][] keys(int threads) {
+        String[][] keys = new String[threads][KEYS_PER_THREAD];
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                keys[t][i] = "t" + (t + 1) + "-" + i;
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,408 @@
+package map;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Chained hash map (like HashMap) that grows without a stop-the-world rehash.
+ *
+ * HashMap doubles its table inside the put() that crosses the threshold: every entry is moved in that
+ * one call, so at 20M entries a single put() takes hundreds of ms. Here:
+ *  - When the threshold is crossed the new, doubled table is created next to the old one.
+ *  - Every put() of a new key and remove() of a present one then moves MIGRATE_PER_OP old buckets
+ *    into the new table (old bucket b splits into new buckets b and b + oldLength, exactly like
+ *    HashMap's resize), until the old table is empty. With a doubling table that always finishes long
+ *    before the next resize is due. Replacing a value never migrates, so it is safe while iterating.
+ *  - A lookup checks the bucket's owner: old table if that bucket hasn't been migrated yet, else new.
+ *  - Tables are split into CHUNK-slot arrays that are allocated on first write, so even creating a
+ *    32M-slot table doesn't zero 128 MB in one go.
+ * So the cost of a resize is spread over the next few hundred thousand operations and the worst-case
+ * put() stays flat (see IncrementalResizeBenchmark). get() never migrates; it stays read-only.
+ */
+public class IncrementalHashMap<K, V> extends AbstractMap<K, V> {
+
+    static final int MIGRATE_PER_OP = 8;
+    static final int CHUNK_SHIFT = 12;
+    static final int CHUNK = 1 << CHUNK_SHIFT; // 4096 slots = 16 KB with compressed oops
+    static final int MAX_CAPACITY = 1 << 30;
+
+    static final class Node<K, V> implements Map.Entry<K, V> {
+        final int hash;
+        final K key;
+        V value;
+        Node<K, V> next;
+
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public V setValue(V value) {
+            V previous = this.value;
+            this.value = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Map.Entry<?, ?> e && Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /** Bucket array made of lazily allocated chunks. */
+    static final class Table<K, V> {
+        final Node<K, V>[][] chunks;
+        final int length;
+        final int mask;
+
+        @SuppressWarnings("unchecked")
+        Table(int length) {
+            this.length = length;
+            this.mask = length - 1;
+            this.chunks = (Node<K, V>[][]) new Node<?, ?>[Math.max(1, length >>> CHUNK_SHIFT)][];
+        }
+
+        Node<K, V> get(int i) {
+            Node<K, V>[] chunk = chunks[i >>> CHUNK_SHIFT];
+            return chunk == null ? null : chunk[i & (CHUNK - 1)];
+        }
+
+        @SuppressWarnings("unchecked")
+        void set(int i, Node<K, V> node) {
+            Node<K, V>[] chunk = chunks[i >>> CHUNK_SHIFT];
+            if (chunk == null) {
+                if (node == null) {
+                    return;
+                }
+                chunk = chunks[i >>> CHUNK_SHIFT] = (Node<K, V>[]) new Node<?, ?>[Math.min(CHUNK, length)];
+            }
+            chunk[i & (CHUNK - 1)] = node;
+        }
+    }
+
+    private final float loadFactor;
+    private Table<K, V> table;
+    private Table<K, V> old;     // non-null while a resize is in progress
+    private int migrated;        // old buckets [0, migrated) have been moved to table
+    private int size;
+    private int threshold;
+    private int modCount;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    public IncrementalHashMap() {
+        this(16, 0.75f);
+    }
+
+    public IncrementalHashMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0 || !(loadFactor > 0)) {
+            throw new IllegalArgumentException("initialCapacity=" + initialCapacity + ", loadFactor=" + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        int capacity = Math.max(1, Integer.highestOneBit(Math.max(1, Math.min(initialCapacity, MAX_CAPACITY) - 1)) << 1);
+        this.table = new Table<>(capacity);
+        this.threshold = (int) Math.min(Integer.MAX_VALUE, (long) (capacity * loadFactor));
+    }
+
+    // ---------------------------------------------------------------- Map
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = find(key);
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        Node<K, V> node = find(key);
+        return node == null ? defaultValue : node.value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return put(key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return put(key, value, true);
+    }
+
+    @Override
+    public V remove(Object key) {
+        Node<K, V> node = removeNode(key);
+        if (node == null) {
+            return null;
+        }
+        migrateStep(); // only after a structural change: modCount moved, so iterators fail fast
+        return node.value;
+    }
+
+    @Override
+    public void clear() {
+        table = new Table<>(table.length);
+        old = null;
+        migrated = 0;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es = entrySet;
+        return es != null ? es : (entrySet = new EntrySet());
+    }
+
+    /** True while entries are still being moved from the old table. */
+    public boolean isResizing() {
+        return old != null;
+    }
+
+    public int capacity() {
+        return table.length;
+    }
+
+    // ---------------------------------------------------------------- internals
+
+    static int spread(Object key) {
+        int h = Objects.hashCode(key);
+        return h ^ (h >>> 16); // as HashMap
+    }
+
+    // table (old or new) that currently holds the bucket for hash h
+    private Table<K, V> owner(int h) {
+        Table<K, V> old = this.old;
+        return old != null && (h & old.mask) >= migrated ? old : table;
+    }
+
+    private Node<K, V> find(Object key) {
+        int h = spread(key);
+        Table<K, V> t = owner(h);
+        for (Node<K, V> n = t.get(h & t.mask); n != null; n = n.next) {
+            if (n.hash == h && Objects.equals(n.key, key)) {
+                return n;
+            }
+        }
+        return null;
+    }
+
+    // Replacing a value doesn't migrate: like HashMap, it's allowed while iterating, and an iterator
+    // would miss the buckets moved under it.
+    private V put(K key, V value, boolean onlyIfAbsent) {
+        int h = spread(key);
+        Table<K, V> t = owner(h);
+        int i = h & t.mask;
+        Node<K, V> first = t.get(i);
+        for (Node<K, V> n = first; n != null; n = n.next) {
+            if (n.hash == h && Objects.equals(n.key, key)) {
+                V previous = n.value;
+                if (!onlyIfAbsent || previous == null) {
+                    n.value = value;
+                }
+                return previous;
+            }
+        }
+        t.set(i, new Node<>(h, key, value, first));
+        modCount++;
+        if (++size > threshold) {
+            startResize();
+        } else {
+            migrateStep();
+        }
+        return null;
+    }
+
+    private Node<K, V> removeNode(Object key) {
+        int h = spread(key);
+        Table<K, V> t = owner(h);
+        int i = h & t.mask;
+        for (Node<K, V> n = t.get(i), prev = null; n != null; prev = n, n = n.next) {
+            if (n.hash == h && Objects.equals(n.key, key)) {
+                if (prev == null) {
+                    t.set(i, n.next);
+                } else {
+                    prev.next = n.next;
+                }
+                size--;
+                modCount++;
+                return n;
+            }
+        }
+        return null;
+    }
+
+    private void startResize() {
+        if (table.length >= MAX_CAPACITY) {
+            threshold = Integer.MAX_VALUE;
+            return;
+        }
+        while (old != null) {
+            migrateStep(); // previous resize not done yet (only after many removes): finish it first
+        }
+        old = table;
+        migrated = 0;
+        table = new Table<>(old.length << 1);
+        threshold = (int) Math.min(Integer.MAX_VALUE, (long) (table.length * loadFactor));
+    }
+
+    // Moves up to MIGRATE_PER_OP old buckets (a whole unallocated chunk counts as one).
+    private void migrateStep() {
+        Table<K, V> old = this.old;
+        if (old == null) {
+            return;
+        }
+        for (int moved = 0; moved < MIGRATE_PER_OP && migrated < old.length; moved++) {
+            int b = migrated;
+            if (old.chunks[b >>> CHUNK_SHIFT] == null) {
+                migrated = Math.min(old.length, (b | (CHUNK - 1)) + 1); // nothing was ever stored there
+                continue;
+            }
+            Node<K, V> lo = null, loTail = null, hi = null, hiTail = null;
+            for (Node<K, V> n = old.get(b), next; n != null; n = next) {
+                next = n.next;
+                n.next = null;
+                if ((n.hash & old.length) == 0) {
+                    if (loTail == null) lo = n; else loTail.next = n;
+                    loTail = n;
+                } else {
+                    if (hiTail == null) hi = n; else hiTail.next = n;
+                    hiTail = n;
+                }
+            }
+            table.set(b, lo);
+            table.set(b + old.length, hi);
+            old.set(b, null);
+            migrated = b + 1;
+            if ((migrated & (CHUNK - 1)) == 0) {
+                old.chunks[b >>> CHUNK_SHIFT] = null; // chunk fully migrated, let it go
+            }
+        }
+        if (migrated >= old.length) {
+            this.old = null;
+            migrated = 0;
+        }
+    }
+
+    // ---------------------------------------------------------------- iteration
+
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            IncrementalHashMap.this.clear();
+        }
+    }
+
+    /**
+     * New table first, then the not yet migrated part of the old one. Iterator.remove() unlinks the
+     * node without a migration step, so the tables don't change shape under the iterator.
+     */
+    final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private Table<K, V> current = table;
+        private int bucket = -1;
+        private Node<K, V> next;
+        private Node<K, V> lastReturned;
+        private int expectedModCount = modCount;
+
+        EntryIterator() {
+            advance();
+        }
+
+        private void advance() {
+            while (next == null) {
+                bucket++;
+                if (bucket >= current.length) {
+                    if (current == table && old != null) {
+                        current = old;
+                        bucket = migrated - 1;
+                        continue;
+                    }
+                    return;
+                }
+                if (current.chunks[bucket >>> CHUNK_SHIFT] == null) {
+                    bucket |= CHUNK - 1; // skip the whole empty chunk
+                    continue;
+                }
+                next = current.get(bucket);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            next = next.next;
+            if (next == null) {
+                advance();
+            }
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeNode(lastReturned.key);
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package map;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * put() latency while a map grows from empty to N entries: HashMap(12, 0.8f) as in StudentHashMap
+ * vs IncrementalHashMap(12, 0.8f). Every put() is timed with System.nanoTime() into a log2 histogram
+ * (resolution: powers of two, "<= 512ns"), then percentiles and the slowest put are printed.
+ *
+ * Run:  java -Xms6g -Xmx6g -XX:+UseParallelGC -Xlog:gc map.IncrementalResizeBenchmark [entries] [hashmap|incremental|both]
+ * (default 20M entries; run the two maps in separate JVMs for clean numbers). Keys are boxed up front,
+ * so allocation in the loop is only the maps' own; GC pauses still land in the max column - -Xlog:gc
+ * tells them apart from resizes, and a big fixed heap (-Xms = -Xmx) keeps them rare.
+ */
+public class IncrementalResizeBenchmark {
+
+    public static void main(String[] args) {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+        String mode = args.length > 1 ? args[1] : "both";
+
+        Integer[] keys = new Integer[entries];
+        for (int i = 0; i < entries; i++) {
+            keys[i] = i * 0x9E3779B1; // scattered, all distinct
+        }
+        checkUpdateWhileIterating();
+        warmUp(keys);
+
+        System.out.printf("%-20s %10s %10s %10s %10s %12s %12s%n",
+                "map", "p50", "p99", "p99.9", "p99.99", "max", "total ms");
+        if (!mode.equals("incremental")) {
+            run("HashMap", new HashMap<>(12, 0.8f), keys);
+        }
+        if (!mode.equals("hashmap")) {
+            run("IncrementalHashMap", new IncrementalHashMap<>(12, 0.8f), keys);
+        }
+    }
+
+    /** Like HashMap, replacing values inside an entrySet loop must visit every entry, even mid-resize. */
+    static void checkUpdateWhileIterating() {
+        IncrementalHashMap<Integer, Integer> map = new IncrementalHashMap<>(16, 0.75f);
+        for (int i = 0; !map.isResizing(); i++) {
+            map.put(i, i);
+        }
+        int visited = 0;
+        for (Map.Entry<Integer, Integer> e : map.entrySet()) {
+            map.put(e.getKey(), e.getValue() + 1);
+            visited++;
+        }
+        if (visited != map.size() || !map.isResizing()) {
+            throw new IllegalStateException("visited " + visited + " of " + map.size() + " entries");
+        }
+    }
+
+    static void warmUp(Integer[] keys) {
+        int n = Math.min(keys.length, 200_000);
+        for (int round = 0; round < 10; round++) {
+            Map<Integer, Integer> a = new HashMap<>(12, 0.8f);
+            Map<Integer, Integer> b = new IncrementalHashMap<>(12, 0.8f);
+            for (int i = 0; i < n; i++) {
+                a.put(keys[i], i);
+                b.put(keys[i], i);
+            }
+        }
+    }
+
+    static void run(String name, Map<Integer, Integer> map, Integer[] keys) {
+        long[] histogram = new long[64];
+        long max = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < keys.length; i++) {
+            long t0 = System.nanoTime();
+            map.put(keys[i], keys[i]);
+            long took = System.nanoTime() - t0;
+            histogram[StatsCounter.bucket(took)]++;
+            max = Math.max(max, took);
+        }
+        long total = System.nanoTime() - start;
+        System.out.printf("%-20s %10s %10s %10s %10s %12s %12d%n", name,
+                percentile(histogram, keys.length, 50), percentile(histogram, keys.length, 99),
+                percentile(histogram, keys.length, 99.9), percentile(histogram, keys.length, 99.99),
+                format(max), total / 1_000_000);
+    }
+
+    static String percentile(long[] histogram, long count, double percentile) {
+        long target = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= target) {
+                return "<=" + format(1L << i);
+            }
+        }
+        return "?";
+    }
+
+    static String format(long nanos) {
+        if (nanos < 10_000) return nanos + "ns";
+        if (nanos < 10_000_000) return nanos / 1_000 + "us";
+        return nanos / 1_000_000 + "ms";
+    }
+}
@@ -0,0 +1,234 @@
+package map;
+
+import java.util.Arrays;
+
+/**
+ * int -> int hash map: two flat int[] arrays, no Integer boxes, no nodes (8 B per slot).
+ * Same layout and probing as IntObjectMap (linear probing, key 0 kept aside, backward-shift remove).
+ *
+ * There is no null, so absent keys read as {@code missingValue} (0 unless given to the constructor);
+ * use containsKey() when the value itself can be missingValue.
+ */
+public class IntIntMap {
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(int key, int value);
+    }
+
+    private final float loadFactor;
+    private final int missingValue;
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private int resizeAt;
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    public IntIntMap() {
+        this(16);
+    }
+
+    public IntIntMap(int expectedSize) {
+        this(expectedSize, 0.75f, 0);
+    }
+
+    public IntIntMap(int expectedSize, float loadFactor, int missingValue) {
+        if (expectedSize < 0 || !(loadFactor > 0 && loadFactor < 1)) {
+            throw new IllegalArgumentException("expectedSize=" + expectedSize + ", loadFactor=" + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        this.missingValue = missingValue;
+        allocate(IntObjectMap.tableSizeFor(expectedSize, loadFactor));
+    }
+
+    public int get(int key) {
+        return getOrDefault(key, missingValue);
+    }
+
+    public int getOrDefault(int key, int defaultValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        int[] keys = this.keys;
+        int mask = keys.length - 1;
+        for (int i = IntObjectMap.mix(key) & mask; ; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) {
+                return values[i];
+            }
+            if (k == 0) {
+                return defaultValue;
+            }
+        }
+    }
+
+    public boolean containsKey(int key) {
+        return key == 0 ? hasZeroKey : keys[slot(key)] == key;
+    }
+
+    /** @return the previous value, or missingValue */
+    public int put(int key, int value) {
+        if (key == 0) {
+            int previous = hasZeroKey ? zeroValue : missingValue;
+            zeroValue = value;
+            hasZeroKey = true;
+            return previous;
+        }
+        int i = slot(key);
+        if (keys[i] == key) {
+            int previous = values[i];
+            values[i] = value;
+            return previous;
+        }
+        insert(i, key, value);
+        return missingValue;
+    }
+
+    /** @return the current value if present (and then nothing is changed), else missingValue */
+    public int putIfAbsent(int key, int value) {
+        if (key == 0) {
+            if (hasZeroKey) {
+                return zeroValue;
+            }
+            zeroValue = value;
+            hasZeroKey = true;
+            return missingValue;
+        }
+        int i = slot(key);
+        if (keys[i] == key) {
+            return values[i];
+        }
+        insert(i, key, value);
+        return missingValue;
+    }
+
+    /** Adds delta to the value of key (absent = missingValue) and returns the new value; for counting. */
+    public int addTo(int key, int delta) {
+        if (key == 0) {
+            zeroValue = (hasZeroKey ? zeroValue : missingValue) + delta;
+            hasZeroKey = true;
+            return zeroValue;
+        }
+        int i = slot(key);
+        if (keys[i] == key) {
+            return values[i] += delta;
+        }
+        insert(i, key, missingValue + delta);
+        return missingValue + delta;
+    }
+
+    /** @return the removed value, or missingValue */
+    public int remove(int key) {
+        if (key == 0) {
+            int previous = hasZeroKey ? zeroValue : missingValue;
+            hasZeroKey = false;
+            return previous;
+        }
+        int i = slot(key);
+        if (keys[i] != key) {
+            return missingValue;
+        }
+        int previous = values[i];
+        shiftBack(i);
+        size--;
+        return previous;
+    }
+
+    public int size() {
+        return hasZeroKey ? size + 1 : size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+        hasZeroKey = false;
+    }
+
+    /** Visits every entry in table order. The map must not be modified meanwhile. */
+    public void forEach(EntryConsumer action) {
+        if (hasZeroKey) {
+            action.accept(0, zeroValue);
+        }
+        int[] keys = this.keys;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        forEach((key, value) -> {
+            if (sb.length() > 1) sb.append(", ");
+            sb.append(key).append('=').append(value);
+        });
+        return sb.append('}').toString();
+    }
+
+    // ---------------------------------------------------------------- table (see IntObjectMap)
+
+    private int slot(int key) {
+        int[] keys = this.keys;
+        int mask = keys.length - 1;
+        int i = IntObjectMap.mix(key) & mask;
+        for (int k; (k = keys[i]) != key && k != 0; i = (i + 1) & mask) {
+        }
+        return i;
+    }
+
+    private void insert(int i, int key, int value) {
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeAt) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    private void shiftBack(int hole) {
+        int[] keys = this.keys;
+        int mask = keys.length - 1;
+        for (int i = (hole + 1) & mask; keys[i] != 0; i = (i + 1) & mask) {
+            int home = IntObjectMap.mix(keys[i]) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        keys[hole] = 0;
+    }
+
+    private void rehash(int capacity) {
+        if (capacity > IntObjectMap.MAX_CAPACITY) {
+            throw new IllegalStateException("IntIntMap is full: " + size + " entries");
+        }
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            int key = oldKeys[j];
+            if (key != 0) {
+                int i = IntObjectMap.mix(key) & mask;
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        resizeAt = Math.min(capacity - 1, (int) (capacity * loadFactor));
+    }
+}
@@ -0,0 +1,102 @@
+package map;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * HashMap<Integer, V> vs IntObjectMap<V> and HashMap<Integer, Integer> vs IntIntMap:
+ * memory per entry (ObjectFootprint, the shared value object excluded) and get() throughput
+ * for random existing keys.
+ *
+ * Run:  java -Xmx8g --add-opens java.base/java.util=ALL-UNNAMED map.IntMapBenchmark [entries] [rounds]
+ * (default 5M entries; 50M needs ~8 GB for the HashMaps. Without --add-opens the HashMap rows
+ * can't be walked and show only the HashMap object itself.)
+ */
+public class IntMapBenchmark {
+
+    static final String VALUE = "value";
+    static final int LOOKUPS = 10_000_000;
+
+    static volatile long sink;
+
+    public static void main(String[] args) {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        SplittableRandom random = new SplittableRandom(42);
+        int[] keys = new int[entries];
+        for (int i = 0; i < entries; i++) {
+            keys[i] = random.nextInt();
+        }
+        int[] probes = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            probes[i] = keys[random.nextInt(entries)];
+        }
+
+        System.out.println("Layout: " + ObjectFootprint.describeLayout() + ", " + entries + " entries");
+        System.out.printf("%-28s %12s %14s%n", "map", "B/entry", "get ns/op");
+
+        // one method per map, so each one is garbage before the next is built
+        boxedObjects(keys, probes, rounds);
+        primitiveObjects(keys, probes, rounds);
+        boxedInts(keys, probes, rounds);
+        primitiveInts(keys, probes, rounds);
+    }
+
+    static void boxedObjects(int[] keys, int[] probes, int rounds) {
+        HashMap<Integer, String> map = new HashMap<>();
+        for (int key : keys) map.put(key, VALUE);
+        report("HashMap<Integer,String>", map, keys.length, rounds, () -> {
+            long found = 0;
+            for (int key : probes) if (map.get(key) != null) found++;
+            return found;
+        });
+    }
+
+    static void primitiveObjects(int[] keys, int[] probes, int rounds) {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        for (int key : keys) map.put(key, VALUE);
+        report("IntObjectMap<String>", map, keys.length, rounds, () -> {
+            long found = 0;
+            for (int key : probes) if (map.get(key) != null) found++;
+            return found;
+        });
+    }
+
+    static void boxedInts(int[] keys, int[] probes, int rounds) {
+        HashMap<Integer, Integer> map = new HashMap<>();
+        for (int key : keys) map.put(key, key & 0xFFFF);
+        report("HashMap<Integer,Integer>", map, keys.length, rounds, () -> {
+            long sum = 0;
+            for (int key : probes) sum += map.getOrDefault(key, 0);
+            return sum;
+        });
+    }
+
+    static void primitiveInts(int[] keys, int[] probes, int rounds) {
+        IntIntMap map = new IntIntMap();
+        for (int key : keys) map.put(key, key & 0xFFFF);
+        report("IntIntMap", map, keys.length, rounds, () -> {
+            long sum = 0;
+            for (int key : probes) sum += map.get(key);
+            return sum;
+        });
+    }
+
+    interface Lookups {
+        long run();
+    }
+
+    static void report(String name, Object map, int entries, int rounds, Lookups lookups) {
+        ObjectFootprint.Footprint footprint = ObjectFootprint.measure(map, List.of(VALUE));
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            sink += lookups.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-28s %12.1f %14.2f%s%n", name, footprint.bytes / (double) entries,
+                best / (double) LOOKUPS, footprint.complete() ? "" : "  (incomplete, see --add-opens)");
+    }
+}
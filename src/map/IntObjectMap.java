@@ -0,0 +1,257 @@
+package map;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * int -> V hash map without boxing: keys live in a flat int[], values in a parallel Object[].
+ *
+ * HashMap<Integer, V> pays per entry: an Integer (16 B), a Node (32 B) and a table slot (4 B), and
+ * every get() chases table -> Node -> Integer. Here an entry is one int + one reference slot
+ * (~11 B at 75% load), and a lookup reads neighbouring array slots.
+ *
+ *  - Open addressing with linear probing: a key lives at hash(key) or the next free slot after it.
+ *  - Key 0 marks a free slot, so a real key 0 is kept aside in hasZeroKey/zeroValue.
+ *  - remove() uses backward-shift deletion (no tombstones): following entries that would become
+ *    unreachable are moved back, so probe sequences stay short after many removes.
+ *  - get/put/getOrDefault/putIfAbsent/remove allocate nothing; forEach passes a primitive int.
+ *  - null values are not allowed (get() returns null for "absent"), like ConcurrentHashMap.
+ */
+public class IntObjectMap<V> {
+
+    /** Like BiConsumer<Integer, V>, without boxing the key. */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    static final int MAX_CAPACITY = 1 << 30;
+
+    private final float loadFactor;
+    private int[] keys;
+    private Object[] values;
+    private int size; // entries in the arrays, not counting the zero key
+    private int resizeAt;
+    private boolean hasZeroKey;
+    private V zeroValue;
+
+    public IntObjectMap() {
+        this(16);
+    }
+
+    public IntObjectMap(int expectedSize) {
+        this(expectedSize, 0.75f);
+    }
+
+    public IntObjectMap(int expectedSize, float loadFactor) {
+        if (expectedSize < 0 || !(loadFactor > 0 && loadFactor < 1)) {
+            throw new IllegalArgumentException("expectedSize=" + expectedSize + ", loadFactor=" + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        allocate(tableSizeFor(expectedSize, loadFactor));
+    }
+
+    public V get(int key) {
+        if (key == 0) {
+            return zeroValue;
+        }
+        int[] keys = this.keys;
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) {
+                return value(i);
+            }
+            if (k == 0) {
+                return null;
+            }
+        }
+    }
+
+    public V getOrDefault(int key, V defaultValue) {
+        V value = get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /** @return the previous value, or null */
+    public V put(int key, V value) {
+        Objects.requireNonNull(value);
+        if (key == 0) {
+            V previous = zeroValue;
+            zeroValue = value;
+            hasZeroKey = true;
+            return previous;
+        }
+        int i = slot(key);
+        if (keys[i] == key) {
+            V previous = value(i);
+            values[i] = value;
+            return previous;
+        }
+        insert(i, key, value);
+        return null;
+    }
+
+    /** @return the current value if present (and then nothing is changed), else null */
+    public V putIfAbsent(int key, V value) {
+        Objects.requireNonNull(value);
+        if (key == 0) {
+            if (!hasZeroKey) {
+                zeroValue = value;
+                hasZeroKey = true;
+                return null;
+            }
+            return zeroValue;
+        }
+        int i = slot(key);
+        if (keys[i] == key) {
+            return value(i);
+        }
+        insert(i, key, value);
+        return null;
+    }
+
+    /** @return the removed value, or null */
+    public V remove(int key) {
+        if (key == 0) {
+            V previous = zeroValue;
+            zeroValue = null;
+            hasZeroKey = false;
+            return previous;
+        }
+        int i = slot(key);
+        if (keys[i] != key) {
+            return null;
+        }
+        V previous = value(i);
+        shiftBack(i);
+        size--;
+        return previous;
+    }
+
+    public int size() {
+        return hasZeroKey ? size + 1 : size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, null);
+        size = 0;
+        hasZeroKey = false;
+        zeroValue = null;
+    }
+
+    /** Visits every entry in table order. The map must not be modified meanwhile. */
+    public void forEach(EntryConsumer<? super V> action) {
+        if (hasZeroKey) {
+            action.accept(0, zeroValue);
+        }
+        int[] keys = this.keys;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], value(i));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        forEach((key, value) -> {
+            if (sb.length() > 1) sb.append(", ");
+            sb.append(key).append('=').append(value);
+        });
+        return sb.append('}').toString();
+    }
+
+    // ---------------------------------------------------------------- table
+
+    // slot holding key, or the free slot where it would be inserted
+    private int slot(int key) {
+        int[] keys = this.keys;
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        for (int k; (k = keys[i]) != key && k != 0; i = (i + 1) & mask) {
+        }
+        return i;
+    }
+
+    private void insert(int i, int key, V value) {
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeAt) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    // Backward-shift deletion: walk the cluster after i and move back every entry whose home slot
+    // is not between the hole and itself, i.e. which would no longer be found behind the hole.
+    private void shiftBack(int hole) {
+        int[] keys = this.keys;
+        int mask = keys.length - 1;
+        for (int i = (hole + 1) & mask; keys[i] != 0; i = (i + 1) & mask) {
+            int home = mix(keys[i]) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        keys[hole] = 0;
+        values[hole] = null;
+    }
+
+    private void rehash(int capacity) {
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalStateException("IntObjectMap is full: " + size + " entries");
+        }
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            int key = oldKeys[j];
+            if (key != 0) {
+                int i = mix(key) & mask;
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        resizeAt = Math.min(capacity - 1, (int) (capacity * loadFactor));
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(int i) {
+        return (V) values[i];
+    }
+
+    // Fibonacci hashing: sequential ids (1, 2, 3...) would otherwise fill one dense run of slots
+    static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    static int tableSizeFor(int expectedSize, float loadFactor) {
+        long needed = (long) Math.ceil(expectedSize / (double) loadFactor) + 1;
+        if (needed > MAX_CAPACITY) {
+            throw new IllegalArgumentException("expectedSize too large: " + expectedSize);
+        }
+        return Math.max(4, Integer.highestOneBit((int) needed - 1) << 1);
+    }
+}
@@ -0,0 +1,196 @@
+package map;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * key -> append-only event buffer, the lock-free replacement for ConcurrentHashMapDemo's
+ * logs.computeIfAbsent(key, k -> new StringBuilder()) + synchronized (sb) { sb.append(...) }.
+ *
+ *  - Each key has a linked list of array chunks (16 slots first, doubling up to CHUNK_MAX). An
+ *    append claims a slot with one getAndAdd on the tail chunk and publishes the element with a
+ *    release store: no lock, no CAS retry loop, so appending is wait-free except when a chunk is
+ *    full. Then the appenders race to link the next chunk (one CAS wins, the others use its chunk).
+ *  - Many threads may append to a key; only one drains it at a time (multi-producer, single
+ *    consumer). A drain walks forward from its read position and stops at the first slot that is
+ *    claimed but not yet written, so elements come out in slot order and nothing is skipped: the
+ *    rest is picked up by the next drain. A drain that finds another drain of the same key running
+ *    returns 0 instead of waiting. Drained chunks are unlinked and left to the GC.
+ *  - Nothing bounds a buffer: events stay until drained, so a consumer must keep up.
+ * Null keys and null elements are rejected (a null slot means "not written yet").
+ */
+public class KeyedAppendLog<K, E> {
+
+    static final int CHUNK_MIN = 16;
+    static final int CHUNK_MAX = 1024;
+
+    private final ConcurrentHashMap<K, Log<E>> logs = new ConcurrentHashMap<>();
+
+    /** Appends element to key's buffer, creating the buffer on first use. */
+    public void append(K key, E element) {
+        Objects.requireNonNull(element);
+        Log<E> log = logs.get(key); // lock-free for an existing key; computeIfAbsent would lock its bin
+        if (log == null) {
+            log = logs.computeIfAbsent(key, k -> new Log<>());
+        }
+        log.append(element);
+    }
+
+    /**
+     * Passes up to maxElements of key's oldest elements to sink, in append order per thread.
+     * @return how many were drained; 0 also when another thread is draining key right now
+     */
+    public int drain(K key, Consumer<? super E> sink, int maxElements) {
+        Log<E> log = logs.get(key);
+        return log == null ? 0 : log.drain(sink, maxElements);
+    }
+
+    /** Everything appended to key and not yet drained (see drain). */
+    public List<E> drain(K key) {
+        List<E> batch = new ArrayList<>();
+        drain(key, batch::add, Integer.MAX_VALUE);
+        return batch;
+    }
+
+    /** drain() of every key, at most maxPerKey elements each; returns the total drained. */
+    public int drainAll(BiConsumer<? super K, ? super E> sink, int maxPerKey) {
+        int total = 0;
+        for (var e : logs.entrySet()) {
+            K key = e.getKey();
+            total += e.getValue().drain(element -> sink.accept(key, element), maxPerKey);
+        }
+        return total;
+    }
+
+    public Set<K> keys() {
+        return logs.keySet();
+    }
+
+    static final class Chunk<E> {
+        private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Object[].class);
+        private static final VarHandle CLAIMED;
+        private static final VarHandle NEXT;
+
+        static {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                CLAIMED = lookup.findVarHandle(Chunk.class, "claimed", int.class);
+                NEXT = lookup.findVarHandle(Chunk.class, "next", Chunk.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        final Object[] slots;
+        volatile int claimed; // slots handed out; can run past slots.length while the chunk is full
+        volatile Chunk<E> next;
+
+        Chunk(int capacity) {
+            slots = new Object[capacity];
+        }
+
+        int claim() {
+            return (int) CLAIMED.getAndAdd(this, 1);
+        }
+
+        void publish(int index, E element) {
+            SLOTS.setRelease(slots, index, element);
+        }
+
+        @SuppressWarnings("unchecked")
+        E read(int index) {
+            return (E) SLOTS.getAcquire(slots, index);
+        }
+
+        void clear(int index) {
+            slots[index] = null; // only the consumer reads a drained slot again, never a producer
+        }
+
+        /** The chunk after this one, linked by whichever appender gets there first. */
+        @SuppressWarnings("unchecked")
+        Chunk<E> nextOrLink() {
+            Chunk<E> n = next;
+            if (n != null) {
+                return n;
+            }
+            Chunk<E> candidate = new Chunk<>(Math.min(CHUNK_MAX, 2 * slots.length));
+            Chunk<E> witness = (Chunk<E>) NEXT.compareAndExchange(this, (Chunk<E>) null, candidate);
+            return witness == null ? candidate : witness;
+        }
+    }
+
+    static final class Log<E> {
+        private static final VarHandle TAIL;
+
+        static {
+            try {
+                TAIL = MethodHandles.lookup().findVarHandle(Log.class, "tail", Chunk.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private volatile Chunk<E> tail;
+        // consumer side, only touched while holding draining
+        private Chunk<E> head;
+        private int readIndex;
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        Log() {
+            head = tail = new Chunk<>(CHUNK_MIN);
+        }
+
+        void append(E element) {
+            Chunk<E> chunk = tail;
+            while (true) {
+                int index = chunk.claim();
+                if (index < chunk.slots.length) {
+                    chunk.publish(index, element);
+                    return;
+                }
+                // chunk is full: move to the next one and help move tail forward (CAS, so it never moves back)
+                Chunk<E> next = chunk.nextOrLink();
+                TAIL.compareAndSet(this, chunk, next);
+                chunk = next;
+            }
+        }
+
+        int drain(Consumer<? super E> sink, int maxElements) {
+            if (!draining.compareAndSet(false, true)) {
+                return 0;
+            }
+            int drained = 0;
+            try {
+                while (drained < maxElements) {
+                    if (readIndex == head.slots.length) {
+                        Chunk<E> next = head.next;
+                        if (next == null) {
+                            break;
+                        }
+                        head = next;
+                        readIndex = 0;
+                    }
+                    E element = head.read(readIndex);
+                    if (element == null) {
+                        break; // claimed but not written yet, or nothing appended: next drain continues here
+                    }
+                    sink.accept(element); // first, so an element whose sink throws is drained again
+                    head.clear(readIndex);
+                    readIndex++;
+                    drained++;
+                }
+            } finally {
+                draining.set(false);
+            }
+            return drained;
+        }
+    }
+}
@@ -0,0 +1,605 @@
+package map;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * LinkedHashMap in access order + removeEldestEntry() = LRU cache (see LRUCacheDemo).
+ *
+ * Eviction policies:
+ *  - LRU      : evict the least recently used entry (default, the classic LinkedHashMap trick).
+ *  - TINY_LFU : same LRU order, but a new key is only ADMITTED if a frequency sketch says it is used
+ *               more often than the LRU victim it would evict. One-off scans (each key touched once)
+ *               can no longer flush the hot working set.
+ *
+ * Bounds:
+ *  - entry count : new LRUCache<>(capacity)                  -> size() <= capacity
+ *  - weight      : new LRUCache<>(maxWeight, weigher)        -> getTotalWeight() <= maxWeight
+ *                  weigher.applyAsLong(key, value) gives the cost of one entry (e.g. bytes); entries
+ *                  are evicted in LRU order until the total fits the budget again. The weigher must
+ *                  return the same weight for the same key/value (it is re-applied on removal).
+ *
+ * Time-based expiry (optional, see expireAfterWrite()/expireAfterAccess()/put(k, v, ttl, unit)):
+ *  - Every entry with a TTL gets a timer in a hierarchical TimerWheel. Each get()/put()/remove()
+ *    advances the wheel, which only visits the time slots that passed since the previous call, so
+ *    expired entries are removed inline in amortized O(1) - no sweeper thread, no full-map scan.
+ *  - With both write and access expiry the entry expires at whichever deadline comes first: reads
+ *    move the access deadline but never past the write deadline (or the per-entry TTL).
+ *  - get() additionally checks the entry's own deadline, so an expired value is never returned.
+ *  - size()/containsKey() may still count entries that expired but weren't cleaned up yet.
+ *
+ * Removal listener (optional, see onRemoval()): called with every value that leaves the cache -
+ * removed, replaced, evicted, rejected by TinyLFU, expired or cleared - e.g. to release resources.
+ *
+ * Statistics (optional, see recordStats()/stats()): hits, misses, puts, evictions (+ load times when
+ * used by LoadingLRUCache). Plain long counters, since LRUCache is single-threaded anyway. Off by
+ * default. putIfAbsent/computeIfAbsent/compute/merge count a put when they store a value and never
+ * a hit or miss, in every mode. Evictions are also reported as JFR events (CacheEvents.Eviction)
+ * while a flight recording is running.
+ *
+ * Note: with a weigher, expiry or removal listener, removing through keySet()/values()/entrySet() views
+ * bypasses that bookkeeping - use the Map methods instead. Serialization keeps the entries, capacity
+ * and policy only: a deserialized cache has no weigher (so no weight bound), expiry, listener or stats.
+ */
+class LRUCache<K,V> extends LinkedHashMap<K,V>{
+
+    private static final long serialVersionUID = 1L;
+
+    enum EvictionPolicy { LRU, TINY_LFU }
+
+    private final int capacity;
+    private final EvictionPolicy policy;
+    private transient FrequencySketch sketch; // null unless TINY_LFU
+    private transient K candidate;            // key being inserted by put(), TINY_LFU only
+    private transient boolean hasCandidate;
+
+    private final transient ToLongBiFunction<? super K, ? super V> weigher; // null unless weighted
+    private final long maximumWeight;
+    private long totalWeight;
+
+    private long expireAfterWriteNanos = -1;  // < 0 -> disabled
+    private long expireAfterAccessNanos = -1; // < 0 -> disabled
+    private transient HashMap<K, TimerWheel.Timer<K>> timers; // null until expiry is used
+    private transient TimerWheel<K> wheel;
+    private transient long origin = System.nanoTime();       // keeps wheel time positive
+
+    private transient BiConsumer<? super K, ? super V> removalListener; // null -> nobody is notified
+
+    private transient StatsCounter stats = StatsCounter.DISABLED;
+
+    public LRUCache(int initialCapacity) {
+        this(initialCapacity, EvictionPolicy.LRU);
+    }
+
+    public LRUCache(int initialCapacity, EvictionPolicy policy) {
+        super(initialCapacity,0.75f,true);
+        this.capacity=initialCapacity;
+        this.policy=Objects.requireNonNull(policy);
+        this.sketch= policy==EvictionPolicy.TINY_LFU ? new FrequencySketch(initialCapacity) : null;
+        this.weigher=null;
+        this.maximumWeight=Long.MAX_VALUE;
+    }
+
+    public LRUCache(long maximumWeight, ToLongBiFunction<? super K, ? super V> weigher) {
+        this(maximumWeight, weigher, EvictionPolicy.LRU);
+    }
+
+    public LRUCache(long maximumWeight, ToLongBiFunction<? super K, ? super V> weigher, EvictionPolicy policy) {
+        super(16,0.75f,true);
+        if (maximumWeight < 0) {
+            throw new IllegalArgumentException("maximumWeight must not be negative: " + maximumWeight);
+        }
+        this.capacity=Integer.MAX_VALUE;
+        this.policy=Objects.requireNonNull(policy);
+        this.sketch= policy==EvictionPolicy.TINY_LFU ? new FrequencySketch(1024) : null;
+        this.weigher=Objects.requireNonNull(weigher);
+        this.maximumWeight=maximumWeight;
+    }
+
+    // Entries, capacity and policy come back (with a fresh TinyLFU sketch); the weigher, expiry,
+    // removal listener and statistics are not serializable and start out disabled.
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        sketch = policy == EvictionPolicy.TINY_LFU ? new FrequencySketch(capacity == Integer.MAX_VALUE ? 1024 : capacity) : null;
+        expireAfterWriteNanos = -1;
+        expireAfterAccessNanos = -1;
+        origin = System.nanoTime();
+        stats = StatsCounter.DISABLED;
+    }
+
+    public EvictionPolicy getPolicy() {
+        return policy;
+    }
+
+    /** Sum of the weights of all entries (entry count when no weigher was given). */
+    public long getTotalWeight() {
+        return weigher == null ? size() : totalWeight;
+    }
+
+    public long getMaximumWeight() {
+        return weigher == null ? capacity : maximumWeight;
+    }
+
+    /** Entries expire {@code duration} after they were created or last replaced. */
+    public LRUCache<K,V> expireAfterWrite(long duration, TimeUnit unit) {
+        enableExpiry();
+        expireAfterWriteNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /** Entries expire {@code duration} after they were last read or written. */
+    public LRUCache<K,V> expireAfterAccess(long duration, TimeUnit unit) {
+        enableExpiry();
+        expireAfterAccessNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /** Registers a listener that receives every key/value pair leaving the cache (listeners add up). */
+    public LRUCache<K,V> onRemoval(BiConsumer<? super K, ? super V> listener) {
+        Objects.requireNonNull(listener);
+        BiConsumer<? super K, ? super V> previous = removalListener;
+        this.removalListener = previous == null ? listener : (K k, V v) -> {
+            previous.accept(k, v);
+            listener.accept(k, v);
+        };
+        return this;
+    }
+
+    /** Starts counting hits/misses/puts/evictions; read them with stats(). */
+    public LRUCache<K,V> recordStats() {
+        if (stats == StatsCounter.DISABLED) {
+            stats = new StatsCounter.Simple();
+        }
+        return this;
+    }
+
+    public CacheStats stats() {
+        return stats.snapshot();
+    }
+
+    StatsCounter statsCounter() {
+        return stats;
+    }
+
+    @Override
+    public V get(Object key) {
+        if (sketch != null) sketch.increment(key);
+        V value = wheel == null ? super.get(key) : getExpiring(key);
+        if (value != null) {
+            stats.recordHit();
+        } else {
+            stats.recordMiss();
+        }
+        return value;
+    }
+
+    private V getExpiring(Object key) {
+        long now = expireEntries();
+        if (expireIfDue(key, now)) {
+            return null;
+        }
+        V value = super.get(key);
+        moveAccessDeadline(key, now);
+        return value;
+    }
+
+    private void moveAccessDeadline(Object key, long now) {
+        TimerWheel.Timer<K> timer = timers.get(key);
+        if (timer != null && expireAfterAccessNanos >= 0) {
+            timer.deadline = Math.min(timer.writeDeadline, now + expireAfterAccessNanos); // a read never extends the write TTL
+            wheel.reschedule(timer);
+        }
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        if (wheel != null) {
+            V value = get(key);
+            return value != null || containsKey(key) ? value : defaultValue;
+        }
+        if (sketch != null) sketch.increment(key);
+        V value = super.get(key);
+        if (value != null || containsKey(key)) {
+            stats.recordHit();
+            return value;
+        }
+        stats.recordMiss();
+        return defaultValue;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        stats.recordPut();
+        if (wheel == null) {
+            return putInternal(key, value);
+        }
+        long now = expireEntries();
+        expireIfDue(key, now);
+        V old = putInternal(key, value);
+        scheduleAfterWrite(key, -1, now);
+        return old;
+    }
+
+    /** put() with a per-entry time-to-live that overrides expireAfterWrite() for this entry. */
+    public V put(K key, V value, long ttl, TimeUnit unit) {
+        stats.recordPut();
+        enableExpiry();
+        long now = expireEntries();
+        expireIfDue(key, now);
+        V old = putInternal(key, value);
+        scheduleAfterWrite(key, unit.toNanos(ttl), now);
+        return old;
+    }
+
+    private V putInternal(K key, V value) {
+        if (removalListener == null) {
+            return putValue(key, value);
+        }
+        boolean replacing = containsKey(key);
+        V old = putValue(key, value);
+        if (replacing && old != value) {
+            removalListener.accept(key, old);
+        }
+        return old;
+    }
+
+    private V putValue(K key, V value) {
+        if (weigher != null) {
+            return putWeighted(key, value);
+        }
+        if (sketch == null) {
+            return super.put(key, value);
+        }
+        sketch.increment(key);
+        candidate = key;
+        hasCandidate = true;
+        try {
+            return super.put(key, value);
+        } finally {
+            candidate = null;
+            hasCandidate = false;
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        // HashMap.putAll() bypasses put(), route it through put() so admission applies
+        for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+            put(e.getKey(), e.getValue());
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (plain()) {
+            return super.remove(key);
+        }
+        if (wheel != null) {
+            expireEntries();
+        }
+        return containsKey(key) ? removeEntry(key) : null;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (plain()) {
+            return super.remove(key, value);
+        }
+        if (containsKey(key) && Objects.equals(super.get(key), value)) {
+            remove(key);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        Map<K, V> removed = removalListener == null ? null : new LinkedHashMap<>(this);
+        super.clear();
+        totalWeight = 0;
+        if (removed != null) {
+            removed.forEach(removalListener);
+        }
+        if (wheel != null) {
+            timers.clear();
+            wheel = new TimerWheel<>(now(), this::onExpire);
+        }
+    }
+
+    // The remaining write paths don't go through put()/remove() inside HashMap, so when bookkeeping
+    // is needed they are rebuilt on top of them (same semantics as the Map interface defaults).
+    // They read with peek(), not get(): the put()/remove() that follows is the one access that
+    // counts. When nothing is written (key already present), touch() records the access instead.
+
+    // The current value without a sketch access or stats; an entry past its deadline is expired first.
+    private V peek(Object key) {
+        if (wheel != null) {
+            expireIfDue(key, expireEntries());
+        }
+        return super.get(key);
+    }
+
+    // A read-only outcome of putIfAbsent()/computeIfAbsent(): counts for TinyLFU and moves the access deadline.
+    private void touch(Object key) {
+        if (sketch != null) sketch.increment(key);
+        if (wheel != null) {
+            moveAccessDeadline(key, now());
+        }
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        if (plain()) {
+            return super.putIfAbsent(key, value);
+        }
+        V v = peek(key);
+        if (v != null) {
+            touch(key);
+            return v;
+        }
+        return put(key, value);
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        if (plain()) {
+            return super.replace(key, value);
+        }
+        return containsKey(key) ? put(key, value) : null;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (plain()) {
+            return super.replace(key, oldValue, newValue);
+        }
+        if (containsKey(key) && Objects.equals(super.get(key), oldValue)) {
+            put(key, newValue);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        if (plain()) {
+            return super.computeIfAbsent(key, mappingFunction);
+        }
+        V v = peek(key);
+        if (v != null) {
+            touch(key);
+        } else if ((v = mappingFunction.apply(key)) != null) {
+            put(key, v);
+        }
+        return v;
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (plain()) {
+            return super.computeIfPresent(key, remappingFunction);
+        }
+        V old = peek(key);
+        if (old == null) {
+            return null;
+        }
+        V v = remappingFunction.apply(key, old);
+        if (v == null) {
+            remove(key);
+        } else {
+            put(key, v);
+        }
+        return v;
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (plain()) {
+            return super.compute(key, remappingFunction);
+        }
+        V v = remappingFunction.apply(key, peek(key));
+        if (v == null) {
+            remove(key);
+        } else {
+            put(key, v);
+        }
+        return v;
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        if (plain()) {
+            return super.merge(key, value, remappingFunction);
+        }
+        Objects.requireNonNull(value);
+        V old = peek(key);
+        V v = old == null ? value : remappingFunction.apply(old, value);
+        if (v == null) {
+            remove(key);
+        } else {
+            put(key, v);
+        }
+        return v;
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        if (plain()) {
+            super.replaceAll(function);
+            return;
+        }
+        // In access order put() would reorder while we iterate, so compute the new values first
+        Map<K, V> replaced = new LinkedHashMap<>();
+        for (Map.Entry<K, V> e : entrySet()) {
+            replaced.put(e.getKey(), function.apply(e.getKey(), e.getValue()));
+        }
+        replaced.forEach(this::put);
+    }
+
+    private V putWeighted(K key, V value) {
+        long weight = weigh(key, value);
+        if (sketch != null) sketch.increment(key);
+        boolean existed = containsKey(key);
+        V old = super.put(key, value);
+        totalWeight += weight - (existed ? weigh(key, old) : 0);
+
+        if (totalWeight > maximumWeight && !existed && sketch != null) {
+            Map.Entry<K, V> eldest = entrySet().iterator().next();
+            if (!Objects.equals(eldest.getKey(), key)
+                    && sketch.frequency(key) <= sketch.frequency(eldest.getKey())) {
+                remove(key); // TinyLFU: the newcomer loses against the LRU victim
+                evicted(key, "REJECTED");
+                return null;
+            }
+        }
+        evictToBudget();
+        return old;
+    }
+
+    // Evict in LRU order (head of the linked list first) until the weight budget holds again.
+    private void evictToBudget() {
+        Iterator<Map.Entry<K, V>> it = entrySet().iterator();
+        while (totalWeight > maximumWeight && it.hasNext()) {
+            Map.Entry<K, V> eldest = it.next();
+            afterRemoval(eldest.getKey(), eldest.getValue());
+            it.remove();
+            evicted(eldest.getKey(), "WEIGHT");
+        }
+    }
+
+    // True when no weight/timer/listener/admission/stats bookkeeping is needed, i.e. the plain
+    // LinkedHashMap paths are fine. With TINY_LFU every insert must go through put() to face the
+    // admission check; with stats the rebuilt paths count their put() like every other mode.
+    private boolean plain() {
+        return weigher == null && wheel == null && removalListener == null && sketch == null
+                && stats == StatsCounter.DISABLED;
+    }
+
+    private V removeEntry(Object key) {
+        V old = super.remove(key);
+        afterRemoval(key, old);
+        return old;
+    }
+
+    private void afterRemoval(Object key, V value) {
+        if (weigher != null) {
+            totalWeight -= weigh(key, value);
+        }
+        if (timers != null) {
+            TimerWheel.Timer<K> timer = timers.remove(key);
+            if (timer != null) {
+                wheel.deschedule(timer);
+            }
+        }
+        if (removalListener != null) {
+            @SuppressWarnings("unchecked")
+            K k = (K) key;
+            removalListener.accept(k, value);
+        }
+    }
+
+    private void enableExpiry() {
+        if (wheel == null) {
+            timers = new HashMap<>();
+            wheel = new TimerWheel<>(now(), this::onExpire);
+        }
+    }
+
+    private long now() {
+        return System.nanoTime() - origin;
+    }
+
+    /** Advances the timer wheel, removing every entry whose time slot has passed. */
+    private long expireEntries() {
+        long now = now();
+        wheel.advance(now);
+        return now;
+    }
+
+    private void onExpire(TimerWheel.Timer<K> timer) {
+        if (timers.get(timer.key) == timer) {
+            removeEntry(timer.key); // not remove(): that would advance the wheel re-entrantly
+            evicted(timer.key, "EXPIRED");
+        }
+    }
+
+    private boolean expireIfDue(Object key, long now) {
+        TimerWheel.Timer<K> timer = timers.get(key);
+        if (timer != null && timer.deadline - now <= 0) {
+            removeEntry(key);
+            evicted(key, "EXPIRED");
+            return true;
+        }
+        return false;
+    }
+
+    // The entry expires at the earlier of its write deadline (per-entry TTL, else expireAfterWrite)
+    // and its access deadline (expireAfterAccess, moved by every read).
+    private void scheduleAfterWrite(K key, long ttlNanos, long now) {
+        long writeDuration = ttlNanos >= 0 ? ttlNanos : expireAfterWriteNanos;
+        long writeDeadline = writeDuration >= 0 ? now + writeDuration : Long.MAX_VALUE;
+        long deadline = expireAfterAccessNanos >= 0 ? Math.min(writeDeadline, now + expireAfterAccessNanos) : writeDeadline;
+        TimerWheel.Timer<K> timer = timers.get(key);
+        if (deadline == Long.MAX_VALUE || !containsKey(key)) { // no TTL, or rejected/evicted right away
+            if (timer != null) {
+                timers.remove(key);
+                wheel.deschedule(timer);
+            }
+            return;
+        }
+        if (timer == null) {
+            timer = new TimerWheel.Timer<>(key, deadline);
+            timers.put(key, timer);
+            wheel.schedule(timer);
+        } else {
+            timer.deadline = deadline;
+            wheel.reschedule(timer);
+        }
+        timer.writeDeadline = writeDeadline;
+    }
+
+    private long weigh(Object key, V value) {
+        @SuppressWarnings("unchecked")
+        long weight = weigher.applyAsLong((K) key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("negative weight " + weight + " for key " + key);
+        }
+        return weight;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        if (weigher != null) {
+            return false; // weighted mode evicts in putWeighted()
+        }
+        if (size() <= capacity) {
+            return false;
+        }
+        if (hasCandidate && !Objects.equals(candidate, eldest.getKey())
+                && sketch.frequency(candidate) <= sketch.frequency(eldest.getKey())) {
+            // The newcomer is not more popular than the victim -> reject the newcomer instead.
+            // (Modifying the map here is allowed as long as we return false.)
+            remove(candidate);
+            evicted(candidate, "REJECTED");
+            return false;
+        }
+        afterRemoval(eldest.getKey(), eldest.getValue());
+        evicted(eldest.getKey(), "SIZE");
+        return true;
+    }
+
+    private void evicted(Object key, String cause) {
+        stats.recordEviction();
+        CacheEvents.eviction(this, key, cause);
+    }
+}
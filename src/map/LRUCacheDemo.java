@@ -1,20 +1,7 @@
 package map;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-
-class LRUCache<K,V> extends LinkedHashMap<K,V>{
-    private final int capacity;
-    public LRUCache(int initialCapacity) {
-        super(initialCapacity,0.75f,true);
-        this.capacity=initialCapacity;
-    }
+import java.util.concurrent.TimeUnit;
 
-    @Override
-    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-        return size()>capacity;
-    }
-}
 public class LRUCacheDemo {
     public static void main(String[] args) {
     /*
@@ -51,5 +38,66 @@ public class LRUCacheDemo {
         System.out.println("After adding 5: " + cache); // After adding 5: {4=Four, 3=THREE, 5=Five}
 
         // Time Complexity: get() → O(1)  ,   put() → O(1)
+
+        // Thread-safe version: LinkedHashMap(accessOrder=true) relinks on every get(), so sharing LRUCache
+        // needs Collections.synchronizedMap -> one lock for all readers. ConcurrentLRUCache buffers the
+        // access-order updates instead, so reads don't contend (see ConcurrentLRUCacheBenchmark).
+        ConcurrentLRUCache<Integer,String> concurrentCache=new ConcurrentLRUCache<>(3);
+        concurrentCache.put(1, "One");
+        concurrentCache.put(2, "Two");
+        concurrentCache.put(3, "Three");
+        concurrentCache.get(1);
+        concurrentCache.put(4, "Four"); // evicts 2 (least recently used)
+        System.out.println("ConcurrentLRUCache: " + concurrentCache); // ConcurrentLRUCache: {3=Three, 1=One, 4=Four}
+
+        // TinyLFU admission: a new key only gets in if it is used more often than the LRU victim,
+        // so a one-off scan can't flush hot keys (hit rates: TinyLfuBenchmark)
+        LRUCache<Integer,String> tinyLfu=new LRUCache<>(2, LRUCache.EvictionPolicy.TINY_LFU);
+        tinyLfu.put(1, "One");
+        tinyLfu.put(2, "Two");
+        tinyLfu.get(1);
+        tinyLfu.get(2);
+        tinyLfu.put(99, "Scan"); // seen once, less frequent than victim 1 -> rejected
+        System.out.println("TinyLFU after scan: " + tinyLfu); // TinyLFU after scan: {1=One, 2=Two}
+
+        // Weight budget instead of entry count: here weight = value length ("bytes"), budget = 10
+        LRUCache<Integer,String> weighted=new LRUCache<>(10, (k, v) -> v.length());
+        weighted.put(1, "One");   // total 3
+        weighted.put(2, "Two");   // total 6
+        weighted.put(3, "Three"); // total 11 > 10 -> evicts 1 -> total 8
+        System.out.println("Weighted: " + weighted + " totalWeight=" + weighted.getTotalWeight()); // Weighted: {2=Two, 3=Three} totalWeight=8
+
+        // Time-based expiry: backed by a timer wheel, expired entries are dropped inline by get()/put()
+        LRUCache<Integer,String> expiring=new LRUCache<Integer,String>(3).expireAfterWrite(100, TimeUnit.MILLISECONDS);
+        expiring.put(1, "One");
+        expiring.put(2, "Two", 10, TimeUnit.SECONDS); // per-entry TTL
+        sleep(200);
+        System.out.println("After 200ms: " + expiring.get(1) + ", " + expiring.get(2)); // After 200ms: null, Two
+
+        // Write and access expiry together: whichever deadline comes first. Reads every 50ms keep
+        // moving the 1s access deadline, but not past the 100ms write TTL / per-entry TTL.
+        LRUCache<Integer,String> mixed=new LRUCache<Integer,String>(3)
+                .expireAfterWrite(100, TimeUnit.MILLISECONDS).expireAfterAccess(1, TimeUnit.SECONDS);
+        mixed.put(1, "One");
+        mixed.put(2, "Two", 100, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 6; i++) {
+            sleep(50);
+            mixed.get(1);
+            mixed.get(2);
+        }
+        System.out.println("Read every 50ms for 300ms: " + mixed.get(1) + ", " + mixed.get(2)); // Read every 50ms for 300ms: null, null
+        LRUCache<Integer,String> idle=new LRUCache<Integer,String>(3)
+                .expireAfterWrite(1, TimeUnit.SECONDS).expireAfterAccess(100, TimeUnit.MILLISECONDS);
+        idle.put(1, "One"); // never read: the 100ms access deadline applies from the write on
+        sleep(200);
+        System.out.println("Unread for 200ms: " + idle.get(1)); // Unread for 200ms: null
+    }
+
+    static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
     }
 }
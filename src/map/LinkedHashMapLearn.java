@@ -80,5 +80,18 @@ public class LinkedHashMapLearn {
 
         System.out.println("Access-order map: " + accessOrderMap); // Access-order map: {2=B, 3=C, 1=A}
 
+        // -------------------------
+        // CompactOrderedMap: same insertion order, no linked list -> entries in one dense array
+        // (about half the memory of LinkedHashMap, iteration is a plain array scan; see FootprintReport)
+        // -------------------------
+        Map<Integer, String> compact = new CompactOrderedMap<>();
+        compact.put(1, "Apple");
+        compact.put(2, "Banana");
+        compact.put(3, "Mango");
+        compact.remove(3);                   // leaves a tombstone, order of the rest unchanged
+        compact.putIfAbsent(3, "Orange");    // appended at the end again
+        compact.replace(2, "Pineapple");     // keeps its position
+        compact.forEach((k, v) -> System.out.println(k + " => " + v)); // 1 => Apple, 2 => Pineapple, 3 => Orange
+
     }
 }
@@ -0,0 +1,240 @@
+package map;
+
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Self-loading, thread-safe front for an {@link LRUCache}: get(key) returns the cached value or
+ * loads it with the loader function.
+ *
+ * Single-flight miss coalescing:
+ *  - The first thread that misses a key registers a CompletableFuture in {@code inFlight} and runs
+ *    the loader. Every other thread that misses the same key meanwhile gets THAT future and waits
+ *    on it, so 500 concurrent misses still mean exactly one load.
+ *  - Why not chm.computeIfAbsent(key, loader)? It runs the loader while holding the bin lock of the
+ *    ConcurrentHashMap, blocking every other key that hashes to the same bin (and it forbids the
+ *    loader from touching the map). Here the bin lock is only held for the putIfAbsent() of the
+ *    future; the loader itself runs with no lock held.
+ *  - The value is published to the cache before the future leaves {@code inFlight}, so a caller
+ *    always finds it in one of the two.
+ *  - A failed load (exception) or a null result is not cached; the next get() tries again.
+ *
+ * Refresh-ahead (optional, see refreshAfterWrite()):
+ *  - Once an entry is older than the refresh interval, the next read still returns the old value
+ *    immediately, and triggers ONE background reload on the given executor (e.g.
+ *    Executors.newVirtualThreadPerTaskExecutor()). Hot keys never make a caller wait for a reload.
+ *  - Duplicate refreshes are suppressed through the same {@code inFlight} map as loads.
+ *  - The new value is swapped in under the cache monitor, and only if nobody wrote the key while the
+ *    reload ran. A failed reload keeps serving the old value; a null result removes the entry.
+ *
+ * Load times go to the wrapped cache's statistics (LRUCache.recordStats()); loads slower than the
+ * JFR threshold are also recorded as CacheEvents.SlowLoad flight recorder events.
+ *
+ * The wrapped LRUCache keeps all its modes (TinyLFU, weigher, expiry ...); it is only accessed
+ * under its own monitor, for short get/put calls.
+ */
+public class LoadingLRUCache<K, V> {
+
+    final LRUCache<K, V> cache;
+    final Function<? super K, ? extends V> loader;
+    final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    long refreshAfterWriteNanos = -1; // < 0 -> no refresh-ahead
+    Executor refreshExecutor;
+    HashMap<K, Long> writeTimes;      // key -> System.nanoTime() of the last write, guarded by cache
+
+    public LoadingLRUCache(int capacity, Function<? super K, ? extends V> loader) {
+        this(new LRUCache<>(capacity), loader);
+    }
+
+    public LoadingLRUCache(LRUCache<K, V> cache, Function<? super K, ? extends V> loader) {
+        this.cache = cache;
+        this.loader = loader;
+    }
+
+    /**
+     * Entries older than {@code duration} are reloaded in the background on {@code executor} when
+     * they are next read; until the reload finishes readers keep getting the old value.
+     */
+    public LoadingLRUCache<K, V> refreshAfterWrite(long duration, TimeUnit unit, Executor executor) {
+        synchronized (cache) {
+            if (writeTimes == null) {
+                writeTimes = new HashMap<>();
+                cache.onRemoval((k, v) -> writeTimes.remove(k)); // evicted/expired -> forget its time
+            }
+            this.refreshExecutor = Objects.requireNonNull(executor);
+            this.refreshAfterWriteNanos = unit.toNanos(duration);
+        }
+        return this;
+    }
+
+    /** Cached value, loading it (once, however many threads ask) on a miss. */
+    public V get(K key) {
+        V value = getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        try {
+            return loadAsync(key).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            if (cause instanceof Error error) throw error;
+            throw e;
+        }
+    }
+
+    /** Like get(), but returns the (possibly shared) future instead of waiting for it. */
+    public CompletableFuture<V> getAsync(K key) {
+        V value = getIfPresent(key);
+        return value != null ? CompletableFuture.completedFuture(value) : loadAsync(key);
+    }
+
+    // Called after a miss: join the in-flight load of this key, or become its loader.
+    CompletableFuture<V> loadAsync(K key) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing; // someone else is already loading this key
+        }
+        load(key, future);
+        return future;
+    }
+
+    public V getIfPresent(K key) {
+        V value;
+        Long writeTime;
+        synchronized (cache) {
+            value = cache.get(key);
+            if (value == null || refreshAfterWriteNanos < 0) {
+                return value;
+            }
+            writeTime = writeTimes.get(key); // null: put before refresh was enabled -> stale
+        }
+        if (writeTime == null || System.nanoTime() - writeTime >= refreshAfterWriteNanos) {
+            refresh(key, writeTime);
+        }
+        return value; // the (possibly stale) value is served right away
+    }
+
+    public void put(K key, V value) {
+        synchronized (cache) {
+            cache.put(key, value);
+            if (writeTimes != null && cache.containsKey(key)) {
+                writeTimes.put(key, System.nanoTime());
+            }
+        }
+    }
+
+    public void invalidate(K key) {
+        synchronized (cache) {
+            cache.remove(key);
+        }
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (cache) {
+            return cache.toString();
+        }
+    }
+
+    // Starts a background reload unless one (or a load) is already running for this key.
+    void refresh(K key, Long staleWriteTime) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(key, future) != null) {
+            return; // duplicate refresh suppressed
+        }
+        try {
+            refreshExecutor.execute(() -> reload(key, staleWriteTime, future));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+        }
+    }
+
+    void reload(K key, Long staleWriteTime, CompletableFuture<V> future) {
+        try {
+            V value = timedLoad(key);
+            synchronized (cache) {
+                // swap only if the entry is still the one we refreshed (not rewritten/invalidated)
+                if (cache.containsKey(key) && Objects.equals(writeTimes.get(key), staleWriteTime)) {
+                    if (value == null) {
+                        cache.remove(key);
+                    } else {
+                        put(key, value);
+                    }
+                }
+            }
+            future.complete(value);
+        } catch (Throwable t) {
+            future.completeExceptionally(t); // keep serving the old value
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    // Runs the loader on the calling thread; no lock of any kind is held meanwhile.
+    void load(K key, CompletableFuture<V> future) {
+        try {
+            // A load that finished between our cache miss and putIfAbsent() already cached the value.
+            // (containsKey() first, so the usual case doesn't count a second miss.)
+            V value;
+            synchronized (cache) {
+                value = cache.containsKey(key) ? cache.get(key) : null;
+            }
+            if (value == null) {
+                value = timedLoad(key);
+                if (value != null) {
+                    put(key, value);
+                }
+            }
+            future.complete(value);
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    V timedLoad(K key) {
+        CacheEvents.SlowLoad event = new CacheEvents.SlowLoad();
+        event.begin();
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            V value = loader.apply(key);
+            success = true;
+            return value;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            synchronized (cache) { // LRUCache's counters are plain longs guarded by its monitor
+                cache.statsCounter().recordLoad(nanos, success);
+            }
+            event.end();
+            if (event.shouldCommit()) { // only when JFR is recording and the load beat the threshold
+                event.cache = getClass().getSimpleName();
+                event.key = String.valueOf(key);
+                event.success = success;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package map;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LoadingLRUCacheDemo {
+    public static void main(String[] args) throws InterruptedException {
+        /*
+        Problem (cache stampede / thundering herd):
+            a cold key is requested by 500 threads at the same moment -> all of them miss
+            -> with "get, if null then load and put" all 500 run the expensive load.
+        chm.computeIfAbsent() loads only once, but holds the bin lock during the load.
+
+        LoadingLRUCache: first miss starts the load, the others wait on the same CompletableFuture.
+        */
+        AtomicInteger loads = new AtomicInteger();
+        LoadingLRUCache<String, String> cache = new LoadingLRUCache<>(new LRUCache<String, String>(100).recordStats(), key -> {
+            loads.incrementAndGet();
+            try {
+                Thread.sleep(200); // pretend: slow database call
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return key.toUpperCase();
+        });
+
+        int threads = 500;
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                    cache.get("cold-key");
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+
+        System.out.println("value: " + cache.get("cold-key")); // value: COLD-KEY
+        System.out.println("loader calls for " + threads + " concurrent misses: " + loads.get()); // 1
+        System.out.println(cache.stats()); // misses=500, loads=1, avgLoadMs≈200
+
+        // Refresh-ahead: after 100ms an entry is "stale" -> readers still get the old value instantly,
+        // and one background reload (on a virtual thread here) swaps in the new one.
+        AtomicInteger version = new AtomicInteger();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            LoadingLRUCache<String, String> prices = new LoadingLRUCache<String, String>(100,
+                    key -> key + "@v" + version.incrementAndGet())
+                    .refreshAfterWrite(100, TimeUnit.MILLISECONDS, executor);
+            System.out.println(prices.get("BTC")); // BTC@v1 (loaded on the caller thread)
+            Thread.sleep(150);
+            System.out.println(prices.get("BTC")); // BTC@v1 (stale, but served without waiting)
+            Thread.sleep(50);
+            System.out.println(prices.get("BTC")); // BTC@v2 (refreshed in the background)
+        }
+    }
+}
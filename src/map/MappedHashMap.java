@@ -0,0 +1,584 @@
+package map;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hash map stored in a memory-mapped file: opening it is mapping it, so a restart has no load time,
+ * and several JVMs on the same machine can map the same file and see each other's writes.
+ *
+ *  - Keys and values are written by fixed-size {@link Serializer}s, so every slot has the same
+ *    layout: [int hash][key bytes][value bytes]. Equal keys must serialize to equal bytes - the
+ *    map hashes and compares the key BYTES, which is also what makes the hash the same in every JVM
+ *    (a key's hashCode() may not be).
+ *  - The file is a 4 KB header plus SEGMENTS segments, each mapped separately (so the file can be
+ *    bigger than one 2 GB MappedByteBuffer) and each an open-addressing table with linear probing
+ *    and backward-shift delete (no tombstones), like RobinHoodHashMap without the robin hood.
+ *  - Writers lock the segment: a ReentrantLock for the threads of this JVM, then a FileLock on the
+ *    segment's header for the other processes (FileLock is per process, hence both).
+ *  - Readers take no lock: every segment has a seqlock version, odd while a write is in progress.
+ *    get() copies the slot bytes it needs, re-checks the version and retries if it moved, so it
+ *    never decodes a torn entry; after SPINS retries it reads under the lock instead. The version is
+ *    accessed with VarHandle acquire/release on the mapping itself, which other processes share.
+ *  - Fixed capacity, decided when the file is created: put() of a new key into a segment that is
+ *    MAX_LOAD full throws IllegalStateException. Byte order is the machine's.
+ * Open a file once per JVM and share the instance (two FileLocks on the same file from one JVM throw
+ * OverlappingFileLockException). Writes reach the page cache at once; force() makes them survive an
+ * OS crash. A process killed in the middle of a write leaves that segment's version odd: the next
+ * writer evens it and the interrupted entry may be torn.
+ */
+public class MappedHashMap<K, V> extends AbstractMap<K, V> implements AutoCloseable {
+
+    /** Writes exactly size() bytes per value; equal values must give equal bytes. */
+    public interface Serializer<T> {
+        int size();
+
+        /**
+         * Writes at out.position(); may write fewer than size() bytes, the rest stays zero. Throws
+         * IllegalArgumentException for a value it can't encode: put() fails, lookups find nothing.
+         */
+        void write(ByteBuffer out, T value);
+
+        T read(ByteBuffer in);
+
+        Serializer<Integer> INT = new Serializer<>() {
+            public int size() { return Integer.BYTES; }
+            public void write(ByteBuffer out, Integer value) { out.putInt(value); }
+            public Integer read(ByteBuffer in) { return in.getInt(); }
+        };
+
+        Serializer<Long> LONG = new Serializer<>() {
+            public int size() { return Long.BYTES; }
+            public void write(ByteBuffer out, Long value) { out.putLong(value); }
+            public Long read(ByteBuffer in) { return in.getLong(); }
+        };
+
+        /** UTF-8 with a 2-byte length, at most maxBytes bytes; longer strings are rejected. */
+        static Serializer<String> string(int maxBytes) {
+            if (maxBytes < 0 || maxBytes > 0xFFFF) {
+                throw new IllegalArgumentException("maxBytes must be 0..65535: " + maxBytes);
+            }
+            return new Serializer<>() {
+                public int size() { return 2 + maxBytes; }
+
+                public void write(ByteBuffer out, String value) {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    if (bytes.length > maxBytes) {
+                        throw new IllegalArgumentException("longer than " + maxBytes + " bytes: " + value);
+                    }
+                    out.putShort((short) bytes.length).put(bytes);
+                }
+
+                public String read(ByteBuffer in) {
+                    byte[] bytes = new byte[in.getShort() & 0xFFFF];
+                    in.get(bytes);
+                    in.position(in.position() + maxBytes - bytes.length);
+                    return new String(bytes, StandardCharsets.UTF_8);
+                }
+            };
+        }
+    }
+
+    static final int DEFAULT_SEGMENTS = 64;
+    static final double MAX_LOAD = 0.9;
+    static final int SPINS = 64;
+
+    private static final long MAGIC = 0x4D61707065644D31L; // "MappedM1"
+    private static final int HEADER = 4096;
+    private static final int SEGMENT_HEADER = 64;         // int version, int count, rest padding
+    private static final int VERSION_OFFSET = 0;
+    private static final int COUNT_OFFSET = 4;
+    private static final VarHandle INT_VIEW = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final FileChannel channel;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final int keySize;
+    private final int valueSize;
+    private final int slotSize;
+    private final int slotsPerSegment;
+    private final int mask;
+    private final int maxCount;
+    private final Segment[] segments;
+    private final ThreadLocal<Scratch> scratch;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    private static final class Segment {
+        final long offset;
+        final MappedByteBuffer buffer;
+        final ReentrantLock lock = new ReentrantLock();
+        FileLock fileLock; // held together with lock
+
+        Segment(long offset, MappedByteBuffer buffer) {
+            this.offset = offset;
+            this.buffer = buffer;
+        }
+    }
+
+    // Per-thread buffers: the encoded key, and room for a slot copied out of the mapping.
+    private final class Scratch {
+        final byte[] key = new byte[keySize];
+        final ByteBuffer keyBuffer = ByteBuffer.wrap(key);
+        final byte[] slotKey = new byte[keySize];
+        final byte[] value = new byte[valueSize];
+        final ByteBuffer valueBuffer = ByteBuffer.wrap(value);
+    }
+
+    private MappedHashMap(FileChannel channel, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                          int segmentCount, int slotsPerSegment) throws IOException {
+        this.channel = channel;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.keySize = keySerializer.size();
+        this.valueSize = valueSerializer.size();
+        this.slotSize = (Integer.BYTES + keySize + valueSize + 3) & ~3; // keep the hash int aligned
+        this.slotsPerSegment = slotsPerSegment;
+        this.mask = slotsPerSegment - 1;
+        this.maxCount = (int) (slotsPerSegment * MAX_LOAD);
+        this.segments = new Segment[segmentCount];
+        long segmentBytes = segmentBytes(slotsPerSegment, slotSize);
+        for (int i = 0; i < segmentCount; i++) {
+            long offset = HEADER + i * segmentBytes;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, offset, segmentBytes);
+            buffer.order(ByteOrder.nativeOrder());
+            segments[i] = new Segment(offset, buffer);
+        }
+        this.scratch = ThreadLocal.withInitial(Scratch::new);
+    }
+
+    public static <K, V> MappedHashMap<K, V> open(Path file, Serializer<K> keySerializer,
+                                                  Serializer<V> valueSerializer, int capacity) throws IOException {
+        return open(file, keySerializer, valueSerializer, capacity, DEFAULT_SEGMENTS);
+    }
+
+    /**
+     * Maps file, creating it for about capacity entries if it doesn't exist yet. An existing file
+     * keeps its own capacity and segments; its key/value sizes must match the serializers.
+     */
+    public static <K, V> MappedHashMap<K, V> open(Path file, Serializer<K> keySerializer,
+                                                  Serializer<V> valueSerializer, int capacity,
+                                                  int segmentCount) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        FileLock lock = null;
+        try {
+            lock = channel.lock(0, HEADER, false); // two processes creating it at once
+            ByteBuffer header = ByteBuffer.allocate(28).order(ByteOrder.nativeOrder());
+            if (channel.size() == 0) {
+                int perSegment = Math.max(1, (int) Math.ceil(capacity / (double) segmentCount));
+                // power of two, with 20% slack below MAX_LOAD for segments that get more than their share
+                int slots = Integer.highestOneBit((int) Math.ceil(perSegment / (MAX_LOAD * 0.8)) * 2 - 1);
+                int slotSize = (Integer.BYTES + keySerializer.size() + valueSerializer.size() + 3) & ~3;
+                header.putLong(MAGIC).putInt(keySerializer.size()).putInt(valueSerializer.size())
+                        .putInt(segmentCount).putInt(slots).putInt(0).flip();
+                channel.write(header, 0);
+                long length = HEADER + segmentCount * segmentBytes(slots, slotSize);
+                channel.write(ByteBuffer.wrap(new byte[1]), length - 1); // sparse: zero pages until written
+                channel.force(true);
+                header.clear();
+            }
+            channel.read(header, 0);
+            header.flip();
+            if (header.getLong() != MAGIC) {
+                throw new IOException(file + " is not a MappedHashMap file");
+            }
+            int keySize = header.getInt();
+            int valueSize = header.getInt();
+            if (keySize != keySerializer.size() || valueSize != valueSerializer.size()) {
+                throw new IllegalArgumentException(file + " has " + keySize + "/" + valueSize
+                        + " byte keys/values, the serializers " + keySerializer.size() + "/" + valueSerializer.size());
+            }
+            return new MappedHashMap<>(channel, keySerializer, valueSerializer, header.getInt(), header.getInt());
+        } catch (IOException | RuntimeException e) {
+            channel.close(); // also releases the lock
+            throw e;
+        } finally {
+            if (lock != null && lock.isValid()) {
+                lock.release();
+            }
+        }
+    }
+
+    private static long segmentBytes(int slots, int slotSize) {
+        long bytes = SEGMENT_HEADER + (long) slots * slotSize;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("segment of " + bytes + " bytes, use more segments");
+        }
+        return (bytes + 4095) & ~4095L;
+    }
+
+    // ---------------------------------------------------------------- reads
+
+    @Override
+    public V get(Object key) {
+        Scratch s = scratch.get();
+        int hash = encodeKey(key, s);
+        if (hash == 0) {
+            return null;
+        }
+        Segment segment = segmentFor(hash);
+        ByteBuffer buffer = segment.buffer;
+        for (int attempt = 0; attempt < SPINS; attempt++) {
+            int version = (int) INT_VIEW.getAcquire(buffer, VERSION_OFFSET);
+            if ((version & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int slot = find(buffer, hash, s);
+            if (slot >= 0) {
+                buffer.get(valueOffset(slot), s.value, 0, valueSize);
+            }
+            VarHandle.loadLoadFence();
+            if ((int) INT_VIEW.getAcquire(buffer, VERSION_OFFSET) == version) {
+                return slot < 0 ? null : valueSerializer.read(s.valueBuffer.clear());
+            }
+        }
+        lock(segment);
+        try {
+            int slot = find(buffer, hash, s);
+            if (slot < 0) {
+                return null;
+            }
+            buffer.get(valueOffset(slot), s.value, 0, valueSize);
+            return valueSerializer.read(s.valueBuffer.clear());
+        } finally {
+            unlock(segment);
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null; // values are never null
+    }
+
+    @Override
+    public int size() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += (int) INT_VIEW.getAcquire(segment.buffer, COUNT_OFFSET);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, count);
+    }
+
+    /** Entries this file can hold at most (new keys can be rejected earlier if a segment fills up). */
+    public long capacity() {
+        return (long) maxCount * segments.length;
+    }
+
+    // ---------------------------------------------------------------- writes
+
+    @Override
+    public V put(K key, V value) {
+        if (value == null) {
+            throw new NullPointerException("null value");
+        }
+        if (key == null) {
+            throw new NullPointerException("null key");
+        }
+        Scratch s = scratch.get();
+        int hash = encode(key, s); // a key the serializer rejects throws here
+        Arrays.fill(s.value, (byte) 0);
+        valueSerializer.write(s.valueBuffer.clear(), value);
+        Segment segment = segmentFor(hash);
+        ByteBuffer buffer = segment.buffer;
+        lock(segment);
+        try {
+            int slot = find(buffer, hash, s);
+            boolean found = slot >= 0;
+            V previous = null;
+            if (found) {
+                byte[] old = new byte[valueSize];
+                buffer.get(valueOffset(slot), old, 0, valueSize);
+                previous = valueSerializer.read(ByteBuffer.wrap(old));
+            } else {
+                int count = buffer.getInt(COUNT_OFFSET);
+                if (count >= maxCount) {
+                    throw new IllegalStateException("segment full: " + count + " entries, file capacity " + capacity());
+                }
+                slot = hash & mask;
+                while (buffer.getInt(slotOffset(slot)) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+            }
+            int version = beginWrite(buffer);
+            try {
+                if (!found) {
+                    buffer.putInt(slotOffset(slot), hash);
+                    buffer.put(slotOffset(slot) + Integer.BYTES, s.key, 0, keySize);
+                    INT_VIEW.setRelease(buffer, COUNT_OFFSET, buffer.getInt(COUNT_OFFSET) + 1);
+                }
+                buffer.put(valueOffset(slot), s.value, 0, valueSize);
+            } finally {
+                INT_VIEW.setRelease(buffer, VERSION_OFFSET, version + 2);
+            }
+            return previous;
+        } finally {
+            unlock(segment);
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        Scratch s = scratch.get();
+        int hash = encodeKey(key, s);
+        if (hash == 0) {
+            return null;
+        }
+        Segment segment = segmentFor(hash);
+        ByteBuffer buffer = segment.buffer;
+        lock(segment);
+        try {
+            int slot = find(buffer, hash, s);
+            if (slot < 0) {
+                return null;
+            }
+            byte[] old = new byte[valueSize];
+            buffer.get(valueOffset(slot), old, 0, valueSize);
+            int version = beginWrite(buffer);
+            try {
+                // backward-shift: move later entries of the probe run into the hole
+                int hole = slot;
+                for (int next = (hole + 1) & mask; ; next = (next + 1) & mask) {
+                    int h = buffer.getInt(slotOffset(next));
+                    if (h == 0) {
+                        break;
+                    }
+                    int home = h & mask;
+                    if (((next - home) & mask) >= ((next - hole) & mask)) { // home is at or before the hole
+                        buffer.put(slotOffset(hole), buffer, slotOffset(next), slotSize);
+                        hole = next;
+                    }
+                }
+                buffer.put(slotOffset(hole), new byte[slotSize]);
+                INT_VIEW.setRelease(buffer, COUNT_OFFSET, buffer.getInt(COUNT_OFFSET) - 1);
+            } finally {
+                INT_VIEW.setRelease(buffer, VERSION_OFFSET, version + 2);
+            }
+            return valueSerializer.read(ByteBuffer.wrap(old));
+        } finally {
+            unlock(segment);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            ByteBuffer buffer = segment.buffer;
+            lock(segment);
+            try {
+                int version = beginWrite(buffer);
+                try {
+                    byte[] zeros = new byte[slotSize];
+                    for (int slot = 0; slot < slotsPerSegment; slot++) {
+                        buffer.put(slotOffset(slot), zeros);
+                    }
+                    INT_VIEW.setRelease(buffer, COUNT_OFFSET, 0);
+                } finally {
+                    INT_VIEW.setRelease(buffer, VERSION_OFFSET, version + 2);
+                }
+            } finally {
+                unlock(segment);
+            }
+        }
+    }
+
+    /** Writes the mapped pages to disk, for durability beyond a process crash. */
+    public void force() {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close(); // the mappings stay valid until they are garbage collected
+    }
+
+    // ---------------------------------------------------------------- internals
+
+    // For lookups: encode(key), or 0 if key is null, not a K or rejected by the serializer (e.g. a
+    // name longer than its maxBytes) - put() can't have stored such a key, so it is simply absent.
+    @SuppressWarnings("unchecked")
+    private int encodeKey(Object key, Scratch s) {
+        if (key == null) {
+            return 0;
+        }
+        try {
+            return encode((K) key, s);
+        } catch (ClassCastException | IllegalArgumentException e) {
+            return 0;
+        }
+    }
+
+    // Serializes key into s.key; returns its hash, never 0 (0 marks an empty slot).
+    private int encode(K key, Scratch s) {
+        Arrays.fill(s.key, (byte) 0);
+        keySerializer.write(s.keyBuffer.clear(), key);
+        int h = 1;
+        for (int i = 0; i < keySize; i++) {
+            h = 31 * h + s.key[i];
+        }
+        h = IntObjectMap.mix(h);
+        return h == 0 ? 1 : h;
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[(int) (((hash >>> 16) * (long) segments.length) >>> 16)]; // high bits; the slot uses the low ones
+    }
+
+    // Slot holding s.key, or -1. Bounded, so a read racing a writer can't loop forever.
+    private int find(ByteBuffer buffer, int hash, Scratch s) {
+        int slot = hash & mask;
+        for (int probes = 0; probes < slotsPerSegment; probes++, slot = (slot + 1) & mask) {
+            int h = buffer.getInt(slotOffset(slot));
+            if (h == 0) {
+                return -1;
+            }
+            if (h == hash) {
+                buffer.get(slotOffset(slot) + Integer.BYTES, s.slotKey, 0, keySize);
+                if (Arrays.equals(s.slotKey, s.key)) {
+                    return slot;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private int slotOffset(int slot) {
+        return SEGMENT_HEADER + slot * slotSize;
+    }
+
+    private int valueOffset(int slot) {
+        return slotOffset(slot) + Integer.BYTES + keySize;
+    }
+
+    // Odd version: readers retry. A version left odd by a killed process is evened first.
+    private static int beginWrite(ByteBuffer buffer) {
+        int version = (int) INT_VIEW.getVolatile(buffer, VERSION_OFFSET);
+        version = (version & 1) != 0 ? version + 1 : version;
+        INT_VIEW.setVolatile(buffer, VERSION_OFFSET, version + 1);
+        VarHandle.storeStoreFence();
+        return version;
+    }
+
+    private void lock(Segment segment) {
+        segment.lock.lock();
+        try {
+            segment.fileLock = channel.lock(segment.offset, SEGMENT_HEADER, false);
+        } catch (IOException e) {
+            segment.lock.unlock();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void unlock(Segment segment) {
+        try {
+            segment.fileLock.release();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            segment.fileLock = null;
+            segment.lock.unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- views
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es = entrySet;
+        return es != null ? es : (entrySet = new EntrySet());
+    }
+
+    // Reads one segment at a time, under its lock, into a list: consistent per segment, not across.
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public int size() {
+            return MappedHashMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            MappedHashMap.this.clear();
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new Iterator<>() {
+                int nextSegment;
+                Iterator<Map.Entry<K, V>> current = List.<Map.Entry<K, V>>of().iterator();
+                Map.Entry<K, V> last;
+
+                public boolean hasNext() {
+                    while (!current.hasNext() && nextSegment < segments.length) {
+                        current = read(segments[nextSegment++]).iterator();
+                    }
+                    return current.hasNext();
+                }
+
+                public Map.Entry<K, V> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Map.Entry<K, V> e = last = current.next();
+                    return new AbstractMap.SimpleEntry<>(e) {
+                        @Override
+                        public V setValue(V value) {
+                            super.setValue(value);
+                            return put(e.getKey(), value);
+                        }
+                    };
+                }
+
+                public void remove() {
+                    if (last == null) {
+                        throw new IllegalStateException();
+                    }
+                    MappedHashMap.this.remove(last.getKey());
+                    last = null;
+                }
+            };
+        }
+
+        private List<Map.Entry<K, V>> read(Segment segment) {
+            List<Map.Entry<K, V>> entries = new ArrayList<>();
+            ByteBuffer buffer = segment.buffer;
+            lock(segment);
+            try {
+                byte[] slot = new byte[slotSize];
+                ByteBuffer slotBuffer = ByteBuffer.wrap(slot);
+                for (int i = 0; i < slotsPerSegment; i++) {
+                    if (buffer.getInt(slotOffset(i)) != 0) {
+                        buffer.get(slotOffset(i), slot);
+                        K key = keySerializer.read(slotBuffer.position(Integer.BYTES));
+                        V value = valueSerializer.read(slotBuffer.position(Integer.BYTES + keySize));
+                        entries.add(new AbstractMap.SimpleImmutableEntry<>(key, value));
+                    }
+                }
+            } finally {
+                unlock(segment);
+            }
+            return entries;
+        }
+    }
+}
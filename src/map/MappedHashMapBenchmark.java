@@ -0,0 +1,139 @@
+package map;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * StudentHashMap's Map<Student, Integer> after a restart: rebuild a HashMap, or map a MappedHashMap.
+ *
+ *  - cold start  HashMap: read `students` records (id, name, marks) from a file and put() them,
+ *                which is what a restarted JVM has to do before the first lookup.
+ *                MappedHashMap: open() the file written earlier, plus the first get().
+ *                Printed: the first run (nothing JIT-compiled yet, like a real restart) and the best of rounds.
+ *  - get()       ns per lookup of a random student, best of rounds: HashMap with a new Student per
+ *                lookup, HashMap with a Student.Probe, MappedHashMap (new Student, value decoded).
+ * The mapped file is in the page cache here, as after a process restart; after a reboot its pages
+ * are read from disk on first touch instead.
+ *
+ * Run:  java map.MappedHashMapBenchmark [students] [rounds]   (defaults 1M, 5)
+ * Not a JMH harness: relative numbers on one machine only.
+ */
+public class MappedHashMapBenchmark {
+
+    static final int LOOKUPS = 2_000_000;
+    static final int MAX_NAME_BYTES = 24;
+
+    static volatile long sink;
+
+    public static void main(String[] args) throws IOException {
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Path dir = Files.createTempDirectory("mapped-students");
+        Path records = dir.resolve("students.bin");
+        Path mapped = dir.resolve("students.map");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(records)))) {
+                out.writeInt(students);
+                for (int i = 0; i < students; i++) {
+                    out.writeInt(i);
+                    out.writeUTF("student" + i);
+                    out.writeInt(i % 101);
+                }
+            }
+            try (MappedHashMap<Student, Integer> map = open(mapped, students)) {
+                for (int i = 0; i < students; i++) {
+                    map.put(new Student(i, "student" + i), i % 101);
+                }
+            }
+            System.out.printf("%d students: records file %d MB, mapped file %d MB%n", students,
+                    Files.size(records) >> 20, Files.size(mapped) >> 20);
+
+            double hashMapFirst = 0;
+            double hashMapBest = Double.MAX_VALUE;
+            double mappedFirst = 0;
+            double mappedBest = Double.MAX_VALUE;
+            for (int round = 0; round < rounds; round++) {
+                long start = System.nanoTime();
+                Map<Student, Integer> rebuilt = load(records);
+                sink += rebuilt.get(new Student(0, "student0"));
+                double ms = (System.nanoTime() - start) / 1e6;
+                hashMapFirst = round == 0 ? ms : hashMapFirst;
+                hashMapBest = Math.min(hashMapBest, ms);
+
+                start = System.nanoTime();
+                try (MappedHashMap<Student, Integer> map = open(mapped, students)) {
+                    sink += map.get(new Student(0, "student0"));
+                    ms = (System.nanoTime() - start) / 1e6;
+                }
+                mappedFirst = round == 0 ? ms : mappedFirst;
+                mappedBest = Math.min(mappedBest, ms);
+            }
+            System.out.printf("%-16s %14s %14s%n", "cold start", "first ms", "best ms");
+            System.out.printf("%-16s %14.1f %14.1f%n", "HashMap rebuild", hashMapFirst, hashMapBest);
+            System.out.printf("%-16s %14.2f %14.2f%n", "MappedHashMap", mappedFirst, mappedBest);
+
+            int[] ids = new int[LOOKUPS];
+            SplittableRandom random = new SplittableRandom(42);
+            for (int i = 0; i < LOOKUPS; i++) {
+                ids[i] = random.nextInt(students);
+            }
+            String[] names = new String[students];
+            for (int i = 0; i < students; i++) {
+                names[i] = "student" + i;
+            }
+            Map<Student, Integer> hashMap = load(records);
+            Student.Probe probe = new Student.Probe();
+            try (MappedHashMap<Student, Integer> map = open(mapped, students)) {
+                System.out.printf("%-16s %14s%n", "get()", "ns/get");
+                System.out.printf("%-16s %14.1f%n", "HashMap", best(rounds, ids, id -> hashMap.get(new Student(id, names[id]))));
+                System.out.printf("%-16s %14.1f%n", "HashMap+Probe", best(rounds, ids, id -> hashMap.get(probe.set(id, names[id]))));
+                System.out.printf("%-16s %14.1f%n", "MappedHashMap", best(rounds, ids, id -> map.get(new Student(id, names[id]))));
+            }
+        } finally {
+            Files.deleteIfExists(records);
+            Files.deleteIfExists(mapped);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    static MappedHashMap<Student, Integer> open(Path file, int students) throws IOException {
+        return MappedHashMap.open(file, Student.serializer(MAX_NAME_BYTES), MappedHashMap.Serializer.INT, students);
+    }
+
+    static Map<Student, Integer> load(Path records) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(records), 1 << 16))) {
+            int count = in.readInt();
+            Map<Student, Integer> map = new HashMap<>((int) (count / 0.75f) + 1);
+            for (int i = 0; i < count; i++) {
+                map.put(new Student(in.readInt(), in.readUTF()), in.readInt());
+            }
+            return map;
+        }
+    }
+
+    interface Lookup {
+        Integer get(int id);
+    }
+
+    static double best(int rounds, int[] ids, Lookup lookup) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            long sum = 0;
+            for (int id : ids) {
+                sum += lookup.get(id);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+            sink += sum;
+        }
+        return best / (double) ids.length;
+    }
+}
@@ -0,0 +1,258 @@
+package map;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InaccessibleObjectException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Measures how many bytes of heap an object graph retains, by walking it with reflection.
+ *
+ * Object sizes follow the HotSpot 64-bit layout, read from the running JVM:
+ *  - object header: 12 bytes with compressed class pointers (default), 16 without, 8 with compact headers
+ *  - references: 4 bytes with compressed oops (default below ~32GB heap), 8 without
+ *  - every object is padded to ObjectAlignmentInBytes (default 8)
+ * Instance size = header + all instance fields of the class and its superclasses, then padded.
+ * Since JDK 15 HotSpot packs fields into gaps (also into a superclass' tail), so this matches what
+ * e.g. JOL reports for the collection classes; arrays are header + 4 byte length + elements, padded.
+ *
+ * Reading private fields of java.util classes needs the package to be opened, e.g.
+ *   --add-opens java.base/java.util=ALL-UNNAMED --add-opens java.base/java.util.concurrent=ALL-UNNAMED
+ * Without that, setAccessible() throws InaccessibleObjectException: the object is still counted
+ * (shallow) but not walked into, and the class is listed in {@link Footprint#inaccessible}.
+ */
+final class ObjectFootprint {
+
+    static final boolean COMPRESSED_OOPS;
+    static final int REFERENCE_SIZE;
+    static final int HEADER_SIZE;
+    static final int ALIGNMENT;
+
+    static {
+        boolean compressedOops = true, compressedClassPointers = true, compactHeaders = false;
+        int alignment = 8;
+        try {
+            HotSpotDiagnosticMXBean hotSpot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            compressedOops = Boolean.parseBoolean(hotSpot.getVMOption("UseCompressedOops").getValue());
+            compressedClassPointers = Boolean.parseBoolean(hotSpot.getVMOption("UseCompressedClassPointers").getValue());
+            alignment = Integer.parseInt(hotSpot.getVMOption("ObjectAlignmentInBytes").getValue());
+            compactHeaders = Boolean.parseBoolean(hotSpot.getVMOption("UseCompactObjectHeaders").getValue());
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            // option unknown to this JVM (UseCompactObjectHeaders only exists since JDK 24): keep defaults
+        }
+        COMPRESSED_OOPS = compressedOops;
+        REFERENCE_SIZE = compressedOops ? 4 : 8;
+        HEADER_SIZE = compactHeaders ? 8 : compressedClassPointers ? 12 : 16;
+        ALIGNMENT = alignment;
+    }
+
+    private ObjectFootprint() {
+    }
+
+    /** Result of one walk. */
+    static final class Footprint {
+        final long bytes;
+        final long objects;
+        final Set<String> inaccessible;
+
+        Footprint(long bytes, long objects, Set<String> inaccessible) {
+            this.bytes = bytes;
+            this.objects = objects;
+            this.inaccessible = inaccessible;
+        }
+
+        boolean complete() {
+            return inaccessible.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return bytes + " bytes in " + objects + " objects" + (complete() ? "" : " (not walked: " + inaccessible + ")");
+        }
+    }
+
+    static String describeLayout() {
+        return "header=" + HEADER_SIZE + "B, reference=" + REFERENCE_SIZE + "B (compressed oops " +
+                (COMPRESSED_OOPS ? "on" : "off") + "), alignment=" + ALIGNMENT + "B";
+    }
+
+    /** Everything reachable from {@code root}. */
+    static Footprint measure(Object root) {
+        return measure(root, List.of());
+    }
+
+    /**
+     * Everything reachable from {@code root} except the {@code excluded} objects (and what only they
+     * reach), e.g. the keys and values of a map, to get the cost of the collection itself.
+     */
+    static Footprint measure(Object root, Iterable<?> excluded) {
+        int expected = excluded instanceof java.util.Collection<?> c ? c.size() : 16;
+        IdentitySet visited = new IdentitySet(2 * expected + 16);
+        for (Object o : excluded) {
+            visited.add(o);
+        }
+        Set<String> inaccessible = new TreeSet<>();
+        ArrayDeque<Object> stack = new ArrayDeque<>();
+        long bytes = 0, objects = 0;
+        if (root != null && visited.add(root)) {
+            stack.push(root);
+        }
+        while (!stack.isEmpty()) {
+            Object o = stack.pop();
+            Class<?> type = o.getClass();
+            objects++;
+            if (type.isArray()) {
+                bytes += arraySize(type.getComponentType(), Array.getLength(o));
+                if (!type.getComponentType().isPrimitive()) {
+                    for (Object element : (Object[]) o) {
+                        if (element != null && visited.add(element)) {
+                            stack.push(element);
+                        }
+                    }
+                }
+                continue;
+            }
+            ClassLayout layout = LAYOUTS.get(type);
+            bytes += layout.size;
+            if (layout.inaccessible) {
+                inaccessible.add(type.getName());
+            }
+            for (Field field : layout.references) {
+                Object child = read(field, o);
+                if (child != null && !(child instanceof Class) && visited.add(child)) {
+                    stack.push(child); // Class objects are shared metadata, not part of anybody's footprint
+                }
+            }
+        }
+        return new Footprint(bytes, objects, inaccessible);
+    }
+
+    /** Size of the object itself, not following references. */
+    static long shallowSize(Object o) {
+        Class<?> type = o.getClass();
+        return type.isArray() ? arraySize(type.getComponentType(), Array.getLength(o)) : LAYOUTS.get(type).size;
+    }
+
+    static long arraySize(Class<?> componentType, int length) {
+        int elementSize = fieldSize(componentType);
+        long base = HEADER_SIZE + 4; // + int length
+        if (elementSize == 8) {
+            base = align(base, 8);
+        }
+        return align(base + (long) elementSize * length, ALIGNMENT);
+    }
+
+    static int fieldSize(Class<?> type) {
+        if (!type.isPrimitive()) return REFERENCE_SIZE;
+        if (type == long.class || type == double.class) return 8;
+        if (type == int.class || type == float.class) return 4;
+        if (type == short.class || type == char.class) return 2;
+        return 1; // byte, boolean
+    }
+
+    static long align(long size, int alignment) {
+        return (size + alignment - 1) & -alignment;
+    }
+
+    private static Object read(Field field, Object o) {
+        try {
+            return field.get(o);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e); // setAccessible(true) succeeded in ClassLayout
+        }
+    }
+
+    // ---------------------------------------------------------------- per class
+
+    private static final ClassValue<ClassLayout> LAYOUTS = new ClassValue<>() {
+        @Override
+        protected ClassLayout computeValue(Class<?> type) {
+            return new ClassLayout(type);
+        }
+    };
+
+    static final class ClassLayout {
+        final long size;
+        final Field[] references;
+        final boolean inaccessible;
+
+        ClassLayout(Class<?> type) {
+            long fields = 0;
+            boolean inaccessible = false;
+            List<Field> references = new ArrayList<>();
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    fields += fieldSize(field.getType());
+                    if (field.getType().isPrimitive()) {
+                        continue;
+                    }
+                    try {
+                        field.setAccessible(true);
+                        references.add(field);
+                    } catch (InaccessibleObjectException | SecurityException e) {
+                        inaccessible = true; // module not opened to us, see class comment
+                    }
+                }
+            }
+            this.size = align(HEADER_SIZE + fields, ALIGNMENT);
+            this.references = references.toArray(new Field[0]);
+            this.inaccessible = inaccessible;
+        }
+    }
+
+    /** Open addressing identity set: much smaller than an IdentityHashMap for 10M+ objects. */
+    static final class IdentitySet {
+        Object[] table;
+        int size;
+
+        IdentitySet(int expected) {
+            table = new Object[Math.max(16, Integer.highestOneBit(Math.max(1, expected - 1)) << 1)];
+        }
+
+        boolean add(Object o) {
+            int mask = table.length - 1;
+            int i = slot(o, mask);
+            for (Object existing; (existing = table[i]) != null; i = (i + 1) & mask) {
+                if (existing == o) {
+                    return false;
+                }
+            }
+            table[i] = o;
+            if (++size > table.length >>> 1) {
+                resize();
+            }
+            return true;
+        }
+
+        private void resize() {
+            Object[] old = table;
+            table = new Object[old.length << 1];
+            int mask = table.length - 1;
+            for (Object o : old) {
+                if (o != null) {
+                    int i = slot(o, mask);
+                    while (table[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    table[i] = o;
+                }
+            }
+        }
+
+        private static int slot(Object o, int mask) {
+            int h = System.identityHashCode(o) * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package map;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * LRU cache whose VALUES live outside the Java heap.
+ *
+ *  - Keys + LRU order: a normal {@link LRUCache} (access order, removal listener).
+ *  - Values: serialized by a {@link Codec} and copied into a {@link SlabAllocator} (direct
+ *    ByteBuffers, or a memory-mapped file). The LRUCache only holds a tiny Handle per entry.
+ *  - Bounded by off-heap bytes: when a new value doesn't fit, least recently used entries are
+ *    evicted until it does, and their blocks go back to the free list.
+ *
+ * Trade-off: every get() deserializes (copies) the value, so this pays off for big values that
+ * would otherwise sit in old gen - see OffHeapLRUCacheBenchmark for GC pauses vs throughput.
+ * Like LRUCache, this class is not thread-safe.
+ */
+public class OffHeapLRUCache<K, V> implements AutoCloseable {
+
+    /** Turns values into bytes and back. */
+    public interface Codec<V> {
+        byte[] encode(V value);
+
+        V decode(byte[] bytes);
+
+        Codec<byte[]> BYTES = new Codec<>() {
+            public byte[] encode(byte[] value) { return value; }
+            public byte[] decode(byte[] bytes) { return bytes; }
+        };
+
+        Codec<String> UTF8 = new Codec<>() {
+            public byte[] encode(String value) { return value.getBytes(StandardCharsets.UTF_8); }
+            public String decode(byte[] bytes) { return new String(bytes, StandardCharsets.UTF_8); }
+        };
+
+        /** Plain Java serialization - convenient, but slow and verbose. */
+        static <V extends Serializable> Codec<V> javaSerialization() {
+            return new Codec<>() {
+                public byte[] encode(V value) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                        out.writeObject(value);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return bytes.toByteArray();
+                }
+
+                @SuppressWarnings("unchecked")
+                public V decode(byte[] bytes) {
+                    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                        return (V) in.readObject();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } catch (ClassNotFoundException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            };
+        }
+    }
+
+    // The only per-entry object on the heap besides the key: 12 byte header + 2 ints.
+    static final class Handle {
+        final int block;
+        final int length;
+
+        Handle(int block, int length) {
+            this.block = block;
+            this.length = length;
+        }
+    }
+
+    private final Codec<V> codec;
+    private final SlabAllocator allocator;
+    private final LRUCache<K, Handle> index;
+
+    /** Values in direct ByteBuffers, at most {@code maxBytes} of them. */
+    public OffHeapLRUCache(long maxBytes, Codec<V> codec) {
+        this(maxBytes, codec, null);
+    }
+
+    /** Values in slabs memory-mapped from {@code file} (created if missing, contents not reused). */
+    public OffHeapLRUCache(long maxBytes, Codec<V> codec, Path file) {
+        this.codec = codec;
+        this.allocator = new SlabAllocator(maxBytes, file);
+        this.index = new LRUCache<K, Handle>(allocator.capacityBytes(),
+                (k, h) -> (long) SlabAllocator.blocksFor(h.length) * SlabAllocator.BLOCK_SIZE)
+                .onRemoval((k, h) -> allocator.free(h.block));
+    }
+
+    public V get(K key) {
+        Handle handle = index.get(key);
+        return handle == null ? null : codec.decode(allocator.load(handle.block, handle.length));
+    }
+
+    public void put(K key, V value) {
+        byte[] bytes = codec.encode(value);
+        if (SlabAllocator.blocksFor(bytes.length) * (long) SlabAllocator.BLOCK_SIZE > allocator.capacityBytes()) {
+            throw new IllegalArgumentException("value of " + bytes.length + " bytes is larger than the cache");
+        }
+        int block;
+        while ((block = allocator.store(bytes)) < 0) {
+            index.remove(index.keySet().iterator().next()); // evict LRU, its blocks are freed
+        }
+        index.put(key, new Handle(block, bytes.length)); // a replaced handle is freed by the listener
+    }
+
+    public boolean remove(K key) {
+        return index.remove(key) != null;
+    }
+
+    public boolean containsKey(K key) {
+        return index.containsKey(key);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /** Off-heap bytes currently holding values (whole blocks). */
+    public long getOffHeapBytesUsed() {
+        return index.getTotalWeight();
+    }
+
+    public long getOffHeapCapacity() {
+        return allocator.capacityBytes();
+    }
+
+    public void clear() {
+        index.clear();
+    }
+
+    @Override
+    public void close() {
+        index.clear();
+        allocator.close();
+    }
+}
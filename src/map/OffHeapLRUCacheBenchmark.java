@@ -0,0 +1,115 @@
+package map;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+/**
+ * On-heap LRUCache<Integer, byte[]> vs OffHeapLRUCache<Integer, byte[]> with the same byte budget:
+ * throughput + GC pauses while a churning workload runs (80% get / 20% put, values 200 B .. 64 KB).
+ *
+ * Run:  java -Xmx2g map.OffHeapLRUCacheBenchmark [heap|offheap|both] [budgetMB] [seconds]
+ * For clean GC numbers run "heap" and "offheap" in separate JVMs; "both" is a quick comparison.
+ */
+public class OffHeapLRUCacheBenchmark {
+
+    interface Cache {
+        byte[] get(int key);
+
+        void put(int key, byte[] value);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String mode = args.length > 0 ? args[0] : "both";
+        long budget = (args.length > 1 ? Long.parseLong(args[1]) : 256) << 20;
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 10;
+
+        List<Long> pauses = new ArrayList<>();
+        listenToGcPauses(pauses);
+
+        System.out.printf("%-8s %12s %10s %14s %14s%n", "mode", "ops/s", "GC count", "GC total ms", "max pause ms");
+        if (!mode.equals("offheap")) {
+            LRUCache<Integer, byte[]> heap = new LRUCache<>(budget, (k, v) -> v.length);
+            run("heap", new Cache() {
+                public byte[] get(int key) { return heap.get(key); }
+                public void put(int key, byte[] value) { heap.put(key, value); }
+            }, seconds, pauses);
+            heap.clear();
+            System.gc();
+            Thread.sleep(500);
+        }
+        if (!mode.equals("heap")) {
+            try (OffHeapLRUCache<Integer, byte[]> offHeap = new OffHeapLRUCache<>(budget, OffHeapLRUCache.Codec.BYTES)) {
+                run("offheap", new Cache() {
+                    public byte[] get(int key) { return offHeap.get(key); }
+                    public void put(int key, byte[] value) { offHeap.put(key, value); }
+                }, seconds, pauses);
+            }
+        }
+    }
+
+    static void run(String name, Cache cache, long seconds, List<Long> pauses) {
+        Random random = new Random(7);
+        IntFunction<byte[]> value = key -> {
+            double u = random.nextDouble();
+            return new byte[200 + (int) (64 * 1024 * u * u * u)]; // mostly small, a few big ones
+        };
+        int keys = 100_000;
+        for (int k = 0; k < keys; k++) {
+            cache.put(k, value.apply(k)); // fill (and overflow) the budget
+        }
+
+        synchronized (pauses) {
+            pauses.clear();
+        }
+        long ops = 0;
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+        while ((ops & 1023) != 0 || System.nanoTime() < deadline) {
+            int key = random.nextInt(keys);
+            if (random.nextInt(5) == 0) {
+                cache.put(key, value.apply(key));
+            } else {
+                cache.get(key);
+            }
+            ops++;
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long count, total = 0, max = 0;
+        synchronized (pauses) {
+            count = pauses.size();
+            for (long p : pauses) {
+                total += p;
+                max = Math.max(max, p);
+            }
+        }
+        System.out.printf("%-8s %12.0f %10d %14d %14d%n", name, ops / elapsed, count, total, max);
+    }
+
+    // One notification per collection, with its duration (ms).
+    static void listenToGcPauses(List<Long> pauses) {
+        NotificationListener listener = (notification, handback) -> {
+            if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                GarbageCollectionNotificationInfo info =
+                        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                synchronized (pauses) {
+                    pauses.add(info.getGcInfo().getDuration());
+                }
+            }
+        };
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener(listener, null, null);
+            }
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package map;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+/**
+ * ConcurrentHashMapDemo's wordCount.merge(w, 1, ...) loop for multi-GB files.
+ *
+ *  - The file is memory-mapped (FileChannel.map, read-only) in regions of about 1 GB - a
+ *    MappedByteBuffer is int-indexed, so one mapping can't exceed 2 GB. Region ends are moved
+ *    forward to the next whitespace, so no word is cut in two.
+ *  - Each region is split in halves by a fork/join RecursiveAction, again at whitespace, down to
+ *    LEAF_BYTES pieces. A leaf copies its piece into the worker's scratch byte[] with one bulk get
+ *    (cheaper than a bounds- and liveness-checked buffer.get(i) per byte) and tokenizes that: no
+ *    lines, no Strings.
+ *  - Every worker thread counts into its own ByteSliceCounter (byte slices -> long), so the
+ *    counting loop has no shared writes and no locks; the per-thread counters are merged once at
+ *    the end. With one shared ConcurrentHashMap every word would box and hit a bin lock, and hot
+ *    words ("the", "INFO") would make all threads queue on the same bin.
+ * A word is a maximal run of bytes that are not ASCII whitespace; counts are exact (case-sensitive,
+ * punctuation included), like splitting on whitespace. Non-ASCII UTF-8 bytes are never whitespace,
+ * so a multi-byte character is never split.
+ *
+ * Run:  java map.ParallelWordCount [file] [threads...]
+ * Without a file a 512 MB sample is generated in the temp directory. Prints MB/s per thread count and
+ * the shared-ConcurrentHashMap.merge() baseline; it scales with cores until memory bandwidth or the
+ * page cache (first cold read of the file) is the limit.
+ */
+public final class ParallelWordCount {
+
+    static final long REGION_BYTES = 1L << 30;
+    static final int LEAF_BYTES = 1 << 20;
+
+    /** Counts of one run. */
+    public static final class Result {
+        private final ByteSliceCounter counts;
+        private final long bytes;
+        private final long nanos;
+
+        Result(ByteSliceCounter counts, long bytes, long nanos) {
+            this.counts = counts;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        public long count(String word) {
+            return counts.get(word);
+        }
+
+        public int distinctWords() {
+            return counts.size();
+        }
+
+        public long totalWords() {
+            long[] total = new long[1];
+            counts.forEach((word, count) -> total[0] += count);
+            return total[0];
+        }
+
+        public Map<String, Long> toMap() {
+            Map<String, Long> map = new HashMap<>(Math.max(16, 2 * counts.size()));
+            counts.forEach(map::put);
+            return map;
+        }
+
+        /** The n most frequent words, most frequent first. */
+        public List<Map.Entry<String, Long>> top(int n) {
+            List<Map.Entry<String, Long>> all = new ArrayList<>(toMap().entrySet());
+            all.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+            return all.subList(0, Math.min(n, all.size()));
+        }
+
+        public double megabytesPerSecond() {
+            return bytes / 1e6 / (nanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d words, %d distinct, %.0f MB/s", totalWords(), distinctWords(), megabytesPerSecond());
+        }
+    }
+
+    private ParallelWordCount() {
+    }
+
+    /** Counts the words of file on a new pool of the given parallelism. */
+    public static Result count(Path file, int parallelism) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return count(file, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public static Result count(Path file, ForkJoinPool pool) throws IOException {
+        long start = System.nanoTime();
+        Map<Thread, Worker> perThread = new ConcurrentHashMap<>();
+        long size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+            List<RecursiveAction> regions = new ArrayList<>();
+            for (long from = 0; from < size; ) {
+                long to = size - from <= REGION_BYTES ? size : nextDelimiter(channel, from + REGION_BYTES);
+                if (to - from > Integer.MAX_VALUE) {
+                    // a word of over 1 GB crosses the region end: end the region before that word instead
+                    to = previousDelimiter(channel, from, from + REGION_BYTES);
+                    if (to <= from) {
+                        throw new IOException("word of 2 GB or more at offset " + from + " can't be mapped or counted");
+                    }
+                }
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+                regions.add(new CountTask(buf, 0, (int) (to - from), perThread));
+                from = to;
+            }
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(regions);
+                }
+            });
+        }
+        ByteSliceCounter total = new ByteSliceCounter();
+        for (Worker worker : perThread.values()) {
+            total.addAll(worker.counter); // a few merges of vocabulary size, not of file size
+        }
+        return new Result(total, size, System.nanoTime() - start);
+    }
+
+    private static final boolean[] DELIMITER = new boolean[256];
+
+    static {
+        for (char c : " \n\r\t\f\u000B".toCharArray()) {
+            DELIMITER[c] = true;
+        }
+    }
+
+    static boolean isDelimiter(byte b) {
+        return DELIMITER[b & 0xFF]; // one load instead of six compares in the tokenizer's inner loops
+    }
+
+    // First offset >= position that holds whitespace (or the file size), read in small pieces.
+    private static long nextDelimiter(FileChannel channel, long position) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long size = channel.size();
+        while (position < size) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            for (int i = 0; i < read; i++) {
+                if (isDelimiter(probe.get(i))) {
+                    return position + i;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    // Last offset in (from, position) that holds whitespace, or from if there is none.
+    private static long previousDelimiter(FileChannel channel, long from, long position) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        while (position > from + 1) {
+            long start = Math.max(from + 1, position - probe.capacity());
+            probe.clear().limit((int) (position - start));
+            int read = channel.read(probe, start);
+            for (int i = read - 1; i >= 0; i--) {
+                if (isDelimiter(probe.get(i))) {
+                    return start + i;
+                }
+            }
+            position = start;
+        }
+        return from;
+    }
+
+    /** What one thread counts into; only ever touched by that thread during the count. */
+    static final class Worker {
+        final ByteSliceCounter counter = new ByteSliceCounter();
+        final byte[] scratch = new byte[LEAF_BYTES];
+    }
+
+    @SuppressWarnings("serial") // RecursiveAction is Serializable, tasks over a mapped buffer are never serialized
+    static final class CountTask extends RecursiveAction {
+        private final ByteBuffer buf;
+        private final int from;
+        private final int to;
+        private final Map<Thread, Worker> perThread;
+
+        CountTask(ByteBuffer buf, int from, int to, Map<Thread, Worker> perThread) {
+            this.buf = buf;
+            this.from = from;
+            this.to = to;
+            this.perThread = perThread;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_BYTES) {
+                // one map lookup per leaf (0.5..1 MB of input), then only thread-confined counting
+                count(perThread.computeIfAbsent(Thread.currentThread(), t -> new Worker()));
+                return;
+            }
+            int mid = from + (to - from) / 2;
+            int split = mid;
+            while (split < to && !isDelimiter(buf.get(split))) {
+                split++; // the word crossing the middle goes to the left half
+            }
+            if (split == to) { // no whitespace after the middle: split before the word instead
+                split = mid - 1;
+                while (split > from && !isDelimiter(buf.get(split))) {
+                    split--;
+                }
+            }
+            if (split == from) {
+                // one word longer than half the range (a blob, a base64 line): nothing to split at
+                Worker worker = perThread.computeIfAbsent(Thread.currentThread(), t -> new Worker());
+                byte[] bytes = new byte[to - from]; // bigger than the scratch, rare enough to allocate
+                buf.get(from, bytes);
+                tokenize(worker.counter, bytes, bytes.length);
+                return;
+            }
+            invokeAll(new CountTask(buf, from, split, perThread), new CountTask(buf, split, to, perThread));
+        }
+
+        private void count(Worker worker) {
+            int end = to - from;
+            buf.get(from, worker.scratch, 0, end);
+            tokenize(worker.counter, worker.scratch, end);
+        }
+
+        private static void tokenize(ByteSliceCounter counter, byte[] bytes, int end) {
+            int i = 0;
+            while (i < end) {
+                while (i < end && isDelimiter(bytes[i])) {
+                    i++;
+                }
+                int start = i;
+                int hash = 0;
+                byte b;
+                while (i < end && !isDelimiter(b = bytes[i])) {
+                    hash = 31 * hash + b;
+                    i++;
+                }
+                if (i > start) {
+                    counter.add(bytes, start, i - start, hash, 1);
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- benchmark
+
+    public static void main(String[] args) throws IOException {
+        Path file;
+        boolean generated = args.length == 0;
+        if (generated) {
+            file = Files.createTempFile("words", ".log");
+            generate(file, 512L << 20);
+        } else {
+            file = Path.of(args[0]);
+        }
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            threadCounts.add(Integer.parseInt(args[i]));
+        }
+        if (threadCounts.isEmpty()) {
+            for (int t = 1; t <= Runtime.getRuntime().availableProcessors(); t *= 2) {
+                threadCounts.add(t);
+            }
+        }
+
+        try {
+            System.out.printf("%s: %.0f MB, %d cores%n", file, Files.size(file) / 1e6,
+                    Runtime.getRuntime().availableProcessors());
+            count(file, 1); // warm up JIT and page cache
+            Result reference = null;
+            for (int threads : threadCounts) {
+                Result result = count(file, threads);
+                System.out.printf("threads %-4d %8.0f MB/s   %s%n", threads, result.megabytesPerSecond(), result);
+                if (reference == null) {
+                    reference = result;
+                } else if (!reference.toMap().equals(result.toMap())) {
+                    throw new IllegalStateException("counts differ at " + threads + " threads");
+                }
+            }
+            System.out.printf("shared ConcurrentHashMap.merge, parallel lines: %.0f MB/s%n", mergeBaseline(file));
+            if (reference != null) {
+                System.out.println("top 5: " + reference.top(5));
+            }
+        } finally {
+            if (generated) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    // The demo's merge() loop on a parallel stream of lines, for comparison.
+    static double mergeBaseline(Path file) throws IOException {
+        ConcurrentHashMap<String, Long> wordCount = new ConcurrentHashMap<>();
+        long start = System.nanoTime();
+        try (Stream<String> lines = Files.lines(file, StandardCharsets.ISO_8859_1)) {
+            lines.parallel().forEach(line -> {
+                for (String w : line.split("\\s+")) {
+                    if (!w.isEmpty()) {
+                        wordCount.merge(w, 1L, Long::sum);
+                    }
+                }
+            });
+        }
+        return Files.size(file) / 1e6 / ((System.nanoTime() - start) / 1e9);
+    }
+
+    // Log-like lines: Zipf-ish words from a 50K vocabulary, so a few words are very hot.
+    static void generate(Path file, long bytes) throws IOException {
+        String[] vocabulary = new String[50_000];
+        Random random = new Random(42);
+        for (int i = 0; i < vocabulary.length; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int len = 2 + random.nextInt(8); len > 0; len--) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            vocabulary[i] = word.toString();
+        }
+        byte[][] encoded = new byte[vocabulary.length][];
+        for (int i = 0; i < vocabulary.length; i++) {
+            encoded[i] = vocabulary[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        ByteBuffer out = ByteBuffer.allocate(1 << 20);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long written = 0;
+            int inLine = 0;
+            while (written < bytes) {
+                double u = random.nextDouble();
+                byte[] word = encoded[(int) (vocabulary.length * u * u * u)];
+                if (out.remaining() < word.length + 1) {
+                    out.flip();
+                    written += channel.write(out);
+                    out.clear();
+                }
+                out.put(word).put(++inLine % 12 == 0 ? (byte) '\n' : (byte) ' ');
+            }
+            out.flip();
+            channel.write(out);
+        }
+    }
+}
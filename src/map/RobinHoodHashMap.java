@@ -0,0 +1,442 @@
+package map;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Open addressing hash map with Robin Hood linear probing.
+ *
+ * HashMap keeps a linked chain (or a red-black tree, for Comparable keys) per bucket; when many keys
+ * collide a get() walks a long chain, so tail latency depends on the keys. Here all entries live in
+ * three flat arrays and:
+ *  - insert: walking from the home slot, a newcomer that is further from its home than the resident
+ *    entry takes the slot ("robs the rich") and the resident moves on. Probe lengths stay close to
+ *    the average instead of a few keys having very long ones.
+ *  - get: stops as soon as it is further from home than the entry in the slot - the key would have
+ *    been placed there - so misses are as cheap as hits.
+ *  - remove: backward-shift deletion. The following entries of the cluster move back one slot; no
+ *    tombstones, so probe lengths don't degrade over time.
+ *
+ * {@link #getMaxProbeLength()} is the longest distance any entry had to its home slot since the last
+ * resize. Export it as a metric: a jump means the keys' hashCode() got worse (or someone is feeding
+ * colliding keys). Null keys and values are allowed, like HashMap.
+ */
+public class RobinHoodHashMap<K, V> extends AbstractMap<K, V> {
+
+    static final int MAX_CAPACITY = 1 << 30;
+
+    private final float loadFactor;
+    private int[] hashes;     // 0 = free slot, otherwise spread(key) (never 0)
+    private Object[] keys;
+    private Object[] values;
+    private int size;
+    private int resizeAt;
+    private int maxProbeLength;
+    private int modCount;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    public RobinHoodHashMap() {
+        this(16, 0.8f);
+    }
+
+    public RobinHoodHashMap(int expectedSize) {
+        this(expectedSize, 0.8f);
+    }
+
+    /** loadFactor up to 0.95 works well with Robin Hood probing; 0.8 is a good default. */
+    public RobinHoodHashMap(int expectedSize, float loadFactor) {
+        if (expectedSize < 0 || !(loadFactor > 0 && loadFactor <= 0.95f)) {
+            throw new IllegalArgumentException("expectedSize=" + expectedSize + ", loadFactor=" + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        allocate(IntObjectMap.tableSizeFor(expectedSize, loadFactor));
+    }
+
+    // ---------------------------------------------------------------- Map
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    @Override
+    public V get(Object key) {
+        int i = find(key);
+        return i >= 0 ? value(i) : null;
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        int i = find(key);
+        return i >= 0 ? value(i) : defaultValue;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        int i = find(key);
+        if (i >= 0) {
+            V previous = value(i);
+            values[i] = value;
+            return previous;
+        }
+        insert(spread(key), key, value);
+        return null;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        int i = find(key);
+        if (i >= 0 && values[i] != null) {
+            return value(i);
+        }
+        if (i >= 0) {
+            values[i] = value; // mapped to null counts as absent, like HashMap
+        } else {
+            insert(spread(key), key, value);
+        }
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        int i = find(key);
+        if (i < 0) {
+            return null;
+        }
+        V previous = value(i);
+        removeAt(i);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(hashes, 0);
+            Arrays.fill(keys, null);
+            Arrays.fill(values, null);
+            size = 0;
+            maxProbeLength = 0;
+            modCount++;
+        }
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        int expectedModCount = modCount;
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != 0) {
+                action.accept(key(i), value(i));
+            }
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es = entrySet;
+        return es != null ? es : (entrySet = new EntrySet());
+    }
+
+    // ---------------------------------------------------------------- probe statistics
+
+    /** Longest distance (in slots) between an entry and its home slot since the last resize/clear. */
+    public int getMaxProbeLength() {
+        return maxProbeLength;
+    }
+
+    /** Average distance between the current entries and their home slots (scans the table). */
+    public double getAverageProbeLength() {
+        long total = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != 0) {
+                total += distance(i);
+            }
+        }
+        return size == 0 ? 0.0 : (double) total / size;
+    }
+
+    public int capacity() {
+        return hashes.length;
+    }
+
+    // ---------------------------------------------------------------- table
+
+    private int find(Object key) {
+        int h = spread(key);
+        int[] hashes = this.hashes;
+        int mask = hashes.length - 1;
+        for (int i = h & mask, dist = 0; ; i = (i + 1) & mask, dist++) {
+            int stored = hashes[i];
+            if (stored == 0 || dist > ((i - stored) & mask)) {
+                return -1; // free slot, or an entry closer to home than we are: key isn't here
+            }
+            if (stored == h && Objects.equals(keys[i], key)) {
+                return i;
+            }
+        }
+    }
+
+    // key is known to be absent
+    private void insert(int h, Object key, Object value) {
+        if (size >= resizeAt) {
+            rehash(hashes.length << 1);
+        }
+        int[] hashes = this.hashes;
+        int mask = hashes.length - 1;
+        for (int i = h & mask, dist = 0; ; i = (i + 1) & mask, dist++) {
+            int stored = hashes[i];
+            if (stored == 0) {
+                hashes[i] = h;
+                keys[i] = key;
+                values[i] = value;
+                maxProbeLength = Math.max(maxProbeLength, dist);
+                size++;
+                modCount++;
+                return;
+            }
+            int storedDist = (i - stored) & mask;
+            if (storedDist < dist) {
+                // Robin Hood: the resident is closer to home, it continues the walk instead
+                maxProbeLength = Math.max(maxProbeLength, dist);
+                hashes[i] = h;
+                h = stored;
+                Object k = keys[i];
+                keys[i] = key;
+                key = k;
+                Object v = values[i];
+                values[i] = value;
+                value = v;
+                dist = storedDist;
+            }
+        }
+    }
+
+    // backward-shift deletion
+    private void removeAt(int i) {
+        int[] hashes = this.hashes;
+        int mask = hashes.length - 1;
+        for (int next = (i + 1) & mask; hashes[next] != 0 && ((next - hashes[next]) & mask) != 0; next = (next + 1) & mask) {
+            hashes[i] = hashes[next];
+            keys[i] = keys[next];
+            values[i] = values[next];
+            i = next;
+        }
+        hashes[i] = 0;
+        keys[i] = null;
+        values[i] = null;
+        size--;
+        modCount++;
+    }
+
+    private void rehash(int capacity) {
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalStateException("RobinHoodHashMap is full: " + size + " entries");
+        }
+        int[] oldHashes = hashes;
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        int oldSize = size;
+        size = 0;
+        for (int j = 0; j < oldHashes.length; j++) {
+            if (oldHashes[j] != 0) {
+                insert(oldHashes[j], oldKeys[j], oldValues[j]);
+            }
+        }
+        size = oldSize;
+    }
+
+    private void allocate(int capacity) {
+        hashes = new int[capacity];
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        resizeAt = Math.min(capacity - 1, (int) (capacity * loadFactor));
+        maxProbeLength = 0;
+    }
+
+    private int distance(int i) {
+        return (i - hashes[i]) & (hashes.length - 1);
+    }
+
+    static int spread(Object key) {
+        int h = Objects.hashCode(key) * 0x9E3779B9;
+        h ^= h >>> 16;
+        return h != 0 ? h : 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private K key(int i) {
+        return (K) keys[i];
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(int i) {
+        return (V) values[i];
+    }
+
+    // ---------------------------------------------------------------- iteration
+
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry<?, ?> e)) {
+                return false;
+            }
+            int i = find(e.getKey());
+            return i >= 0 && Objects.equals(values[i], e.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            removeAt(find(((Map.Entry<?, ?>) o).getKey()));
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            RobinHoodHashMap.this.clear();
+        }
+    }
+
+    /**
+     * Walks the table DOWNWARDS, starting just below a free slot. Iterator.remove() shifts the rest of
+     * the cluster back by one slot, i.e. only entries above the removed one (already visited) move, and
+     * no cluster crosses the free start slot - so nothing is skipped or returned twice.
+     */
+    final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private final int start;
+        private int cursor;          // last slot looked at
+        private int lastReturned = -1;
+        private int remaining;       // entries not returned yet
+        private int expectedModCount = modCount;
+
+        EntryIterator() {
+            int s = 0;
+            while (hashes[s] != 0) {
+                s++; // there is always a free slot: resizeAt < capacity
+            }
+            start = s;
+            cursor = s;
+            remaining = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            int mask = hashes.length - 1;
+            do {
+                cursor = (cursor - 1) & mask;
+            } while (hashes[cursor] == 0 && cursor != start);
+            remaining--;
+            lastReturned = cursor;
+            return new Entry(cursor);
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeAt(lastReturned);
+            lastReturned = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * Reads and writes through to the table until the map is structurally modified (a new key put,
+     * a remove); after that getValue() returns the value seen last and setValue() throws.
+     */
+    final class Entry implements Map.Entry<K, V> {
+        private final int index;
+        private final K key;
+        private final int expectedModCount = modCount;
+        private V value;
+
+        Entry(int index) {
+            this.index = index;
+            this.key = key(index);
+            this.value = value(index);
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            if (modCount == expectedModCount) {
+                value = value(index);
+            }
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException("entry is stale: the map was structurally modified");
+            }
+            V previous = value(index);
+            values[index] = value;
+            this.value = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Map.Entry<?, ?> e && Objects.equals(key, e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+}
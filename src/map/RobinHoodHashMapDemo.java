@@ -0,0 +1,43 @@
+package map;
+
+import java.util.Map;
+
+public class RobinHoodHashMapDemo {
+
+    // A key with a poor hashCode(): only 1000 distinct hash values for any number of keys
+    record Order(int id) {
+        @Override
+        public int hashCode() {
+            return id % 1000;
+        }
+    }
+
+    public static void main(String[] args) {
+        // Same Map API as HashMap: put, get, getOrDefault, putIfAbsent, remove, iteration
+        Map<Student, Integer> studentMarks = new RobinHoodHashMap<>();
+        studentMarks.put(new Student(101, "Alice"), 85);
+        studentMarks.put(new Student(102, "Bob"), 90);
+        studentMarks.put(new Student(101, "Alice"), 95); // same key -> value replaced
+        studentMarks.putIfAbsent(new Student(103, "Carol"), 70);
+        System.out.println(studentMarks.getOrDefault(new Student(104, "Dave"), -1)); // -1
+        studentMarks.entrySet().removeIf(e -> e.getValue() < 80); // iterator remove -> Carol gone
+        for (Map.Entry<Student, Integer> e : studentMarks.entrySet()) {
+            System.out.println(e.getKey() + " -> Marks : " + e.getValue());
+        }
+
+        // Probe lengths: distance of entries from their home slot. Good hashes keep the max small,
+        // a hashCode() regression shows up immediately -> export getMaxProbeLength() as a metric.
+        RobinHoodHashMap<Student, Integer> good = new RobinHoodHashMap<>();
+        RobinHoodHashMap<Order, Integer> poor = new RobinHoodHashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            good.put(new Student(i, "student-" + i), i);
+            if (i < 20_000) {
+                poor.put(new Order(i), i);
+            }
+        }
+        System.out.printf("Student keys: size=%d maxProbe=%d avgProbe=%.2f%n",
+                good.size(), good.getMaxProbeLength(), good.getAverageProbeLength());
+        System.out.printf("Order keys (hashCode = id %% 1000): size=%d maxProbe=%d avgProbe=%.2f%n",
+                poor.size(), poor.getMaxProbeLength(), poor.getAverageProbeLength());
+    }
+}
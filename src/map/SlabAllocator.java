@@ -0,0 +1,158 @@
+package map;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Off-heap memory for {@link OffHeapLRUCache}: fixed-size blocks carved out of big "slabs".
+ *
+ *  - A slab is one direct ByteBuffer (or one memory-mapped region of a file), SLAB_SIZE bytes long.
+ *    Slabs are created lazily until {@code maxBytes} is reached and never returned to the OS.
+ *  - A slab is split into BLOCK_SIZE blocks. A value is stored in a chain of blocks: the first 4
+ *    bytes of every block hold the id of the next block (-1 = last one).
+ *  - Free blocks are kept in an int[] stack (the free list) -> allocate/free are O(blocks) and no
+ *    object is created per value. Because all blocks have the same size there is no fragmentation:
+ *    any freed block can hold any part of any value.
+ *  - The Java heap only sees the slab ByteBuffers + one small handle per entry, so GC has almost
+ *    nothing to trace no matter how many GB of values are stored.
+ */
+final class SlabAllocator implements AutoCloseable {
+
+    static final int BLOCK_SIZE = 512;
+    static final int BLOCK_HEADER = Integer.BYTES;  // next-block id
+    static final int BLOCK_PAYLOAD = BLOCK_SIZE - BLOCK_HEADER;
+    static final int SLAB_SIZE = 1 << 20;           // 1 MB
+    static final int BLOCKS_PER_SLAB = SLAB_SIZE / BLOCK_SIZE;
+
+    final int maxSlabs;
+    final List<ByteBuffer> slabs = new ArrayList<>();
+    final FileChannel channel; // null -> direct buffers
+    int[] freeBlocks = new int[BLOCKS_PER_SLAB];
+    int freeCount;
+
+    /** @param mappedFile null for direct ByteBuffers, otherwise the file the slabs are mapped from */
+    SlabAllocator(long maxBytes, Path mappedFile) {
+        if (maxBytes < SLAB_SIZE) {
+            throw new IllegalArgumentException("maxBytes must be at least one slab (" + SLAB_SIZE + "): " + maxBytes);
+        }
+        this.maxSlabs = (int) Math.min(Integer.MAX_VALUE / BLOCKS_PER_SLAB, maxBytes / SLAB_SIZE);
+        try {
+            this.channel = mappedFile == null ? null : FileChannel.open(mappedFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static int blocksFor(int length) {
+        return Math.max(1, (length + BLOCK_PAYLOAD - 1) / BLOCK_PAYLOAD);
+    }
+
+    /** Blocks that can still be handed out (free ones + ones in slabs not created yet). */
+    long availableBlocks() {
+        return freeCount + (long) (maxSlabs - slabs.size()) * BLOCKS_PER_SLAB;
+    }
+
+    long capacityBytes() {
+        return (long) maxSlabs * SLAB_SIZE;
+    }
+
+    long usedBytes() {
+        return ((long) slabs.size() * BLOCKS_PER_SLAB - freeCount) * BLOCK_SIZE;
+    }
+
+    /** Copies {@code bytes} off-heap; returns the first block id, or -1 if there is not enough room. */
+    int store(byte[] bytes) {
+        int needed = blocksFor(bytes.length);
+        if (availableBlocks() < needed) {
+            return -1;
+        }
+        while (freeCount < needed) {
+            addSlab();
+        }
+        int first = freeBlocks[--freeCount];
+        int block = first;
+        int offset = 0;
+        for (int i = 0; i < needed; i++) {
+            int next = i == needed - 1 ? -1 : freeBlocks[--freeCount];
+            ByteBuffer slab = slabs.get(block / BLOCKS_PER_SLAB);
+            int position = (block % BLOCKS_PER_SLAB) * BLOCK_SIZE;
+            int chunk = Math.min(BLOCK_PAYLOAD, bytes.length - offset);
+            slab.putInt(position, next);
+            slab.put(position + BLOCK_HEADER, bytes, offset, chunk);
+            offset += chunk;
+            block = next;
+        }
+        return first;
+    }
+
+    byte[] load(int first, int length) {
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        for (int block = first; block != -1; ) {
+            ByteBuffer slab = slabs.get(block / BLOCKS_PER_SLAB);
+            int position = (block % BLOCKS_PER_SLAB) * BLOCK_SIZE;
+            int chunk = Math.min(BLOCK_PAYLOAD, length - offset);
+            slab.get(position + BLOCK_HEADER, bytes, offset, chunk);
+            offset += chunk;
+            block = slab.getInt(position);
+        }
+        return bytes;
+    }
+
+    void free(int first) {
+        for (int block = first; block != -1; ) {
+            ByteBuffer slab = slabs.get(block / BLOCKS_PER_SLAB);
+            int next = slab.getInt((block % BLOCKS_PER_SLAB) * BLOCK_SIZE);
+            pushFree(block);
+            block = next;
+        }
+    }
+
+    void addSlab() {
+        int slabIndex = slabs.size();
+        ByteBuffer slab;
+        if (channel == null) {
+            slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+        } else {
+            try {
+                slab = channel.map(FileChannel.MapMode.READ_WRITE, (long) slabIndex * SLAB_SIZE, SLAB_SIZE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        slabs.add(slab);
+        // push in reverse so blocks are handed out in address order
+        for (int i = BLOCKS_PER_SLAB - 1; i >= 0; i--) {
+            pushFree(slabIndex * BLOCKS_PER_SLAB + i);
+        }
+    }
+
+    void pushFree(int block) {
+        if (freeCount == freeBlocks.length) {
+            freeBlocks = Arrays.copyOf(freeBlocks, freeBlocks.length * 2);
+        }
+        freeBlocks[freeCount++] = block;
+    }
+
+    @Override
+    public void close() {
+        // Direct/mapped buffers are released when the ByteBuffers become unreachable.
+        slabs.clear();
+        freeCount = 0;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
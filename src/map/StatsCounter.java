@@ -0,0 +1,195 @@
+package map;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Where caches report hits, misses, puts, evictions and loads.
+ *
+ *  - {@link #DISABLED} (the default) does nothing. Caches keep it in a field and always call it,
+ *    so disabled statistics cost at most a field load and a call to an empty method.
+ *  - {@link Striped} counts with LongAdders: each contended thread increments its own cell and the
+ *    cells are only summed in snapshot(), so concurrent readers don't fight over one counter.
+ *  - {@link PerThread} goes one step further for the hot path: one cell per thread, written without
+ *    any atomic instruction. ConcurrentLRUCache uses it, a CAS per get() was ~10% of a hit.
+ */
+interface StatsCounter {
+
+    void recordHit();
+
+    void recordMiss();
+
+    void recordPut();
+
+    void recordEviction();
+
+    void recordLoad(long nanos, boolean success);
+
+    CacheStats snapshot();
+
+    StatsCounter DISABLED = new StatsCounter() {
+        public void recordHit() {}
+        public void recordMiss() {}
+        public void recordPut() {}
+        public void recordEviction() {}
+        public void recordLoad(long nanos, boolean success) {}
+        public CacheStats snapshot() { return CacheStats.EMPTY; }
+    };
+
+    /** Plain counters for caches that are confined to one thread or guarded by one lock. */
+    final class Simple implements StatsCounter {
+        long hits, misses, puts, evictions, loadSuccesses, loadFailures, totalLoadNanos;
+        final long[] loadTimes = new long[64];
+
+        public void recordHit() { hits++; }
+        public void recordMiss() { misses++; }
+        public void recordPut() { puts++; }
+        public void recordEviction() { evictions++; }
+
+        public void recordLoad(long nanos, boolean success) {
+            if (success) loadSuccesses++; else loadFailures++;
+            totalLoadNanos += nanos;
+            loadTimes[bucket(nanos)]++;
+        }
+
+        public CacheStats snapshot() {
+            return new CacheStats(hits, misses, puts, evictions,
+                    loadSuccesses, loadFailures, totalLoadNanos, loadTimes.clone());
+        }
+    }
+
+    final class Striped implements StatsCounter {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder puts = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+        final LongAdder loadSuccesses = new LongAdder();
+        final LongAdder loadFailures = new LongAdder();
+        final LongAdder totalLoadNanos = new LongAdder();
+        // loadTimes[i] counts loads that took [2^(i-1), 2^i) ns, i.e. log2 buckets from 1ns to ~292y
+        final LongAdder[] loadTimes = new LongAdder[64];
+
+        Striped() {
+            for (int i = 0; i < loadTimes.length; i++) {
+                loadTimes[i] = new LongAdder();
+            }
+        }
+
+        public void recordHit() { hits.increment(); }
+        public void recordMiss() { misses.increment(); }
+        public void recordPut() { puts.increment(); }
+        public void recordEviction() { evictions.increment(); }
+
+        public void recordLoad(long nanos, boolean success) {
+            (success ? loadSuccesses : loadFailures).increment();
+            totalLoadNanos.add(nanos);
+            loadTimes[bucket(nanos)].increment();
+        }
+
+        public CacheStats snapshot() {
+            long[] histogram = new long[loadTimes.length];
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = loadTimes[i].sum();
+            }
+            return new CacheStats(hits.sum(), misses.sum(), puts.sum(), evictions.sum(),
+                    loadSuccesses.sum(), loadFailures.sum(), totalLoadNanos.sum(), histogram);
+        }
+    }
+
+    /**
+     * Hits/misses/puts/evictions in a per-thread cell: the owning thread increments plain fields
+     * (opaque stores, no atomic instruction) and snapshot() sums all cells. Cheaper than a LongAdder
+     * CAS on every get(). Cells of threads that have terminated are folded into {@code base} and
+     * dropped - at the latest when the number of cells doubles - so memory stays proportional to the
+     * live threads, also with a thread (or virtual thread) per request.
+     * Loads are rare and slow anyway, they go to the LongAdders of {@link Striped}.
+     */
+    final class PerThread implements StatsCounter {
+        static final int MIN_SWEEP = 64;
+
+        static final class Cell {
+            private static final VarHandle COUNT = MethodHandles.arrayElementVarHandle(long[].class);
+            final Thread owner;
+            final long[] counts = new long[4]; // hits, misses, puts, evictions
+
+            Cell(Thread owner) {
+                this.owner = owner;
+            }
+
+            void increment(int i) {
+                COUNT.setOpaque(counts, i, (long) COUNT.getOpaque(counts, i) + 1); // only the owner writes
+            }
+
+            long get(int i) {
+                return (long) COUNT.getOpaque(counts, i);
+            }
+        }
+
+        final ConcurrentLinkedQueue<Cell> cells = new ConcurrentLinkedQueue<>();
+        final AtomicInteger cellCount = new AtomicInteger();
+        final ThreadLocal<Cell> cell = ThreadLocal.withInitial(this::register);
+        final Striped loads = new Striped();
+        final long[] base = new long[4]; // counts of dropped cells, guarded by this
+        volatile int sweepAt = MIN_SWEEP; // written under this
+
+        public void recordHit() { cell.get().increment(0); }
+        public void recordMiss() { cell.get().increment(1); }
+        public void recordPut() { cell.get().increment(2); }
+        public void recordEviction() { cell.get().increment(3); }
+
+        public void recordLoad(long nanos, boolean success) {
+            loads.recordLoad(nanos, success);
+        }
+
+        private Cell register() {
+            Cell c = new Cell(Thread.currentThread());
+            cells.add(c);
+            if (cellCount.incrementAndGet() >= sweepAt) {
+                synchronized (this) {
+                    sweep();
+                    sweepAt = Math.max(MIN_SWEEP, 2 * cellCount.get());
+                }
+            }
+            return c;
+        }
+
+        // Guarded by this. A terminated thread's writes are visible once isAlive() returned false.
+        private void sweep() {
+            for (Iterator<Cell> it = cells.iterator(); it.hasNext(); ) {
+                Cell c = it.next();
+                if (!c.owner.isAlive()) {
+                    for (int i = 0; i < base.length; i++) {
+                        base[i] += c.get(i);
+                    }
+                    it.remove();
+                    cellCount.decrementAndGet();
+                }
+            }
+        }
+
+        public synchronized CacheStats snapshot() {
+            sweep();
+            long[] totals = base.clone();
+            for (Cell c : cells) {
+                for (int i = 0; i < totals.length; i++) {
+                    totals[i] += c.get(i);
+                }
+            }
+            long[] histogram = new long[loads.loadTimes.length];
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = loads.loadTimes[i].sum();
+            }
+            return new CacheStats(totals[0], totals[1], totals[2], totals[3], loads.loadSuccesses.sum(),
+                    loads.loadFailures.sum(), loads.totalLoadNanos.sum(), histogram);
+        }
+    }
+
+    // log2 bucket: index i holds durations in [2^(i-1), 2^i) ns
+    static int bucket(long nanos) {
+        return Math.min(63, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos)));
+    }
+}
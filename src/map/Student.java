@@ -0,0 +1,80 @@
+package map;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+class Student extends CompositeKey {
+    private final int id;
+    private final String name;
+
+    public Student(int id, String name) {
+        super(hash(id, name)); // computed once; Objects.hash(id, name) boxed id + allocated an array per call
+        this.id = id;
+        this.name = name;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // equals() (from CompositeKey) compares the cached hash, then id (primitive, cheap), then name
+    @Override
+    protected boolean sameFields(CompositeKey o) {
+        return o instanceof Student student && id == student.id && Objects.equals(name, student.name);
+    }
+
+    @Override
+    public String toString() {
+        return "Student{" +
+                "id=" + id +
+                ", name='" + name + '\'' +
+                '}';
+    }
+
+    /**
+     * Fixed-size layout for MappedHashMap: int id, then the name as at most maxNameBytes of UTF-8.
+     * A null or longer name is rejected (IllegalArgumentException), so such a Student can't be put.
+     */
+    static MappedHashMap.Serializer<Student> serializer(int maxNameBytes) {
+        MappedHashMap.Serializer<String> names = MappedHashMap.Serializer.string(maxNameBytes);
+        return new MappedHashMap.Serializer<>() {
+            public int size() {
+                return Integer.BYTES + names.size();
+            }
+
+            public void write(ByteBuffer out, Student student) {
+                if (student.name == null) {
+                    throw new IllegalArgumentException("null name: " + student);
+                }
+                out.putInt(student.id);
+                names.write(out, student.name);
+            }
+
+            public Student read(ByteBuffer in) {
+                return new Student(in.getInt(), names.read(in));
+            }
+        };
+    }
+
+    /** Reusable lookup key: studentMarks.get(probe.set(101, "Alice")) allocates nothing. */
+    static final class Probe extends CompositeKey.Probe {
+        private int id;
+        private String name;
+
+        Probe set(int id, String name) {
+            this.id = id;
+            this.name = name;
+            rehash(hash(id, name));
+            return this;
+        }
+
+        @Override
+        protected boolean matches(CompositeKey key) {
+            return key instanceof Student student && id == student.id && Objects.equals(name, student.name);
+        }
+    }
+}
@@ -1,50 +1,13 @@
 package map;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
 
-class Student{
-    private int id;
-    private String name;
-
-    public Student(int id, String name) {
-        this.id = id;
-        this.name = name;
-    }
-
-    public int getId() {
-        return id;
-    }
-
-    public String getName() {
-        return name;
-    }
-
-    // Overriding equals() to compare based on id and name
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true; // same object
-        if (o == null || getClass() != o.getClass()) return false;
-        Student student = (Student) o;
-        return id == student.id && Objects.equals(name, student.name);
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(id, name);
-    }
-
-    @Override
-    public String toString() {
-        return "Student{" +
-                "id=" + id +
-                ", name='" + name + '\'' +
-                '}';
-    }
-}
 public class StudentHashMap {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         Map<Student,Integer> studentMarks = new HashMap<>(12,0.8f); // (initialCapacity,loadFactor)
 
         Student s1 = new Student(101, "Alice");
@@ -64,5 +27,25 @@ public class StudentHashMap {
 
         // Fetch marks for a student
         System.out.println("Marks of Alice (id=101): " + studentMarks.get(new Student(101, "Alice")));
+
+        // Same lookup without creating a Student: one probe, re-set for every lookup (see CompositeKey)
+        Student.Probe probe = new Student.Probe();
+        System.out.println("Marks of Bob (id=102): " + studentMarks.get(probe.set(102, "Bob")));
+        System.out.println("Is (103, Carol) present? " + studentMarks.containsKey(probe.set(103, "Carol")));
+
+        // Same map in a memory-mapped file: survives restarts, other JVMs can map it too (see MappedHashMap)
+        Path file = Files.createTempFile("student-marks", ".map");
+        Files.delete(file); // open() creates and sizes it
+        try (MappedHashMap<Student, Integer> mappedMarks =
+                     MappedHashMap.open(file, Student.serializer(32), MappedHashMap.Serializer.INT, 1000)) {
+            mappedMarks.putAll(studentMarks);
+        }
+        try (MappedHashMap<Student, Integer> reopened =
+                     MappedHashMap.open(file, Student.serializer(32), MappedHashMap.Serializer.INT, 1000)) {
+            System.out.println("After reopening, marks of Alice: " + reopened.get(new Student(101, "Alice"))
+                    + ", entries: " + reopened.size());
+        } finally {
+            Files.delete(file);
+        }
     }
 }
@@ -0,0 +1,106 @@
+package map;
+
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SplittableRandom;
+
+/**
+ * HashMap<Student, Integer>.get() with three kinds of keys:
+ *  - ObjectsHashStudent: the old Student, hashCode() = Objects.hash(id, name) on every call
+ *  - Student: CompositeKey with the hash cached, a new Student per lookup (as in StudentHashMap)
+ *  - Student.Probe: one reusable lookup key, no allocation at all
+ * Reports ns per get() and bytes allocated per get() (ThreadMXBean.getThreadAllocatedBytes).
+ *
+ * Run:  java map.StudentKeyBenchmark [students] [rounds]
+ * Plain main() loop, best of N rounds; the tree has no JMH. Keep -XX:+DoEscapeAnalysis (default) on:
+ * the JIT may scalar-replace short-lived keys in some call shapes, which is why allocation is measured too.
+ */
+public class StudentKeyBenchmark {
+
+    static final int LOOKUPS = 5_000_000;
+
+    static volatile long sink;
+
+    /** The Student key as it was before CompositeKey. */
+    static final class ObjectsHashStudent {
+        private final int id;
+        private final String name;
+
+        ObjectsHashStudent(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ObjectsHashStudent student = (ObjectsHashStudent) o;
+            return id == student.id && Objects.equals(name, student.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, name);
+        }
+    }
+
+    interface Lookups {
+        long run(int[] ids);
+    }
+
+    public static void main(String[] args) {
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        String[] names = new String[students];
+        Map<ObjectsHashStudent, Integer> legacyMarks = new HashMap<>();
+        Map<Student, Integer> marks = new HashMap<>();
+        for (int id = 0; id < students; id++) {
+            names[id] = "student-" + id;
+            legacyMarks.put(new ObjectsHashStudent(id, names[id]), id % 101);
+            marks.put(new Student(id, names[id]), id % 101);
+        }
+        SplittableRandom random = new SplittableRandom(7);
+        int[] ids = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            ids[i] = random.nextInt(students);
+        }
+        Student.Probe probe = new Student.Probe();
+
+        System.out.printf("%-22s %10s %12s%n", "key", "ns/get", "B/get");
+        run("Objects.hash Student", rounds, ids, lookups -> {
+            long sum = 0;
+            for (int id : lookups) sum += legacyMarks.get(new ObjectsHashStudent(id, names[id]));
+            return sum;
+        });
+        run("cached-hash Student", rounds, ids, lookups -> {
+            long sum = 0;
+            for (int id : lookups) sum += marks.get(new Student(id, names[id]));
+            return sum;
+        });
+        run("Student.Probe", rounds, ids, lookups -> {
+            long sum = 0;
+            for (int id : lookups) sum += marks.get(probe.set(id, names[id]));
+            return sum;
+        });
+    }
+
+    static void run(String name, int rounds, int[] ids, Lookups lookups) {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        long best = Long.MAX_VALUE, allocated = 0;
+        for (int round = 0; round < rounds; round++) {
+            long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            sink += lookups.run(ids);
+            best = Math.min(best, System.nanoTime() - start);
+            allocated = threads.getThreadAllocatedBytes(threadId) - bytesBefore; // last (warmest) round
+        }
+        System.out.printf("%-22s %10.2f %12.1f%n", name, best / (double) ids.length, allocated / (double) ids.length);
+    }
+}
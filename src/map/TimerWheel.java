@@ -0,0 +1,137 @@
+package map;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel used by {@link LRUCache} for time-based expiry.
+ *
+ * Idea (like the hour/minute/second hands of a clock):
+ *  - 5 wheels of 64 buckets each. A bucket of wheel i covers 2^SHIFT[i] nanoseconds:
+ *      wheel 0 ~1ms, wheel 1 ~67ms, wheel 2 ~4.3s, wheel 3 ~4.6min, wheel 4 ~4.9h per bucket.
+ *  - A timer is put into the finest wheel whose 64 buckets still reach its deadline -> O(1).
+ *  - advance(now) only visits the buckets whose time slot has passed. Timers found there are either
+ *    expired (deadline reached) or re-scheduled into a finer wheel ("cascading").
+ *  - Every timer cascades at most 4 times, so expiry costs amortized O(1) per entry and nobody ever
+ *    scans the whole map.
+ */
+final class TimerWheel<K> {
+
+    static final int BUCKETS = 64;
+    static final int[] SHIFT = {20, 26, 32, 38, 44};
+
+    final Timer<K>[][] wheels;
+    final Consumer<Timer<K>> onExpire;
+    long nanos; // time of the last advance()
+
+    TimerWheel(long now, Consumer<Timer<K>> onExpire) {
+        this.nanos = now;
+        this.onExpire = onExpire;
+        this.wheels = newWheels(SHIFT.length, BUCKETS);
+        for (Timer<K>[] wheel : wheels) {
+            for (int j = 0; j < BUCKETS; j++) {
+                wheel[j] = Timer.sentinel();
+            }
+        }
+    }
+
+    void schedule(Timer<K> timer) {
+        Timer<K> sentinel = findBucket(timer.deadline);
+        Timer<K> last = sentinel.prev;
+        timer.prev = last;
+        timer.next = sentinel;
+        last.next = timer;
+        sentinel.prev = timer;
+    }
+
+    void reschedule(Timer<K> timer) {
+        deschedule(timer);
+        schedule(timer);
+    }
+
+    void deschedule(Timer<K> timer) {
+        if (timer.next != null) {
+            timer.prev.next = timer.next;
+            timer.next.prev = timer.prev;
+            timer.next = timer.prev = null;
+        }
+    }
+
+    /** Expires every timer whose deadline is {@code <= now}, touching only the buckets that ticked. */
+    void advance(long now) {
+        long previous = nanos;
+        if (now - previous <= 0) {
+            return;
+        }
+        nanos = now;
+        for (int i = 0; i < SHIFT.length; i++) {
+            long previousTicks = previous >>> SHIFT[i];
+            long currentTicks = now >>> SHIFT[i];
+            if (currentTicks == previousTicks) {
+                break; // coarser wheels can't have ticked either
+            }
+            expire(i, previousTicks, currentTicks - previousTicks);
+        }
+    }
+
+    void expire(int index, long previousTicks, long delta) {
+        Timer<K>[] wheel = wheels[index];
+        int count = (int) Math.min(delta + 1, BUCKETS);
+        for (int k = 0; k < count; k++) {
+            Timer<K> sentinel = wheel[(int) ((previousTicks + k) & (BUCKETS - 1))];
+            if (sentinel.next == sentinel) {
+                continue;
+            }
+            // detach the whole bucket first: re-scheduled timers may land in this same bucket
+            Timer<K> timer = sentinel.next;
+            sentinel.prev.next = null;
+            sentinel.next = sentinel.prev = sentinel;
+            while (timer != null) {
+                Timer<K> next = timer.next;
+                timer.next = timer.prev = null;
+                if (timer.deadline - nanos <= 0) {
+                    onExpire.accept(timer);
+                } else {
+                    schedule(timer);
+                }
+                timer = next;
+            }
+        }
+    }
+
+    Timer<K> findBucket(long deadline) {
+        long delta = deadline - nanos;
+        for (int i = 0; i < SHIFT.length - 1; i++) {
+            if (delta < ((long) BUCKETS << SHIFT[i])) {
+                return wheels[i][(int) ((deadline >>> SHIFT[i]) & (BUCKETS - 1))];
+            }
+        }
+        // Beyond the coarsest wheel's reach (~13 days): park it there, it cascades down later.
+        int last = SHIFT.length - 1;
+        return wheels[last][(int) ((deadline >>> SHIFT[last]) & (BUCKETS - 1))];
+    }
+
+    @SuppressWarnings("unchecked") // generic array creation; the array never escapes as Timer<?>[][]
+    static <K> Timer<K>[][] newWheels(int wheels, int buckets) {
+        return (Timer<K>[][]) new Timer<?>[wheels][buckets];
+    }
+
+    /** A scheduled deadline for one cache key; also a node of the bucket's circular list. */
+    static final class Timer<K> {
+        final K key;
+        long deadline;
+        long writeDeadline = Long.MAX_VALUE; // LRUCache: expire-after-write / per-entry TTL, MAX_VALUE if none
+        Timer<K> prev;
+        Timer<K> next;
+
+        Timer(K key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+
+        static <K> Timer<K> sentinel() {
+            Timer<K> sentinel = new Timer<>(null, 0L);
+            sentinel.prev = sentinel.next = sentinel;
+            return sentinel;
+        }
+    }
+}
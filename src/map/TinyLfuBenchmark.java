@@ -0,0 +1,69 @@
+package map;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Trace replay: hit rate of LRUCache with EvictionPolicy.LRU vs EvictionPolicy.TINY_LFU.
+ *
+ * Default trace (synthetic, reproducible):
+ *  - "daytime" traffic: skewed accesses over a 5_000-key working set
+ *  - every 100_000 accesses a "nightly batch" scans 20_000 brand-new keys exactly once
+ *  Pure LRU lets every scan flush the hot set; TinyLFU refuses to admit the one-off keys.
+ *
+ * Run:  java map.TinyLfuBenchmark [traceFile]
+ *       traceFile = one key per line (e.g. exported from an access log), replayed in order.
+ * Each access is one computeIfAbsent(), as a read-through cache does: the sketch counts it once,
+ * hit or miss (a get() followed by a put() on a miss would count every miss twice).
+ */
+public class TinyLfuBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        List<String> trace = args.length > 0 ? Files.readAllLines(Path.of(args[0])) : syntheticTrace();
+        System.out.println("trace length: " + trace.size());
+
+        System.out.printf("%-10s %10s %10s%n", "capacity", "LRU", "TinyLFU");
+        for (int capacity : new int[]{250, 500, 1_000, 2_000, 4_000}) {
+            double lru = replay(trace, new LRUCache<>(capacity, LRUCache.EvictionPolicy.LRU));
+            double tinyLfu = replay(trace, new LRUCache<>(capacity, LRUCache.EvictionPolicy.TINY_LFU));
+            System.out.printf("%-10d %9.2f%% %9.2f%%%n", capacity, lru * 100, tinyLfu * 100);
+        }
+    }
+
+    static double replay(List<String> trace, LRUCache<String, Boolean> cache) {
+        long misses = 0;
+        boolean[] loaded = new boolean[1];
+        for (String key : trace) {
+            loaded[0] = false;
+            cache.computeIfAbsent(key, k -> {
+                loaded[0] = true;
+                return Boolean.TRUE;
+            });
+            if (loaded[0]) {
+                misses++;
+            }
+        }
+        return 1 - misses / (double) trace.size();
+    }
+
+    static List<String> syntheticTrace() {
+        Random random = new Random(42);
+        List<String> trace = new ArrayList<>();
+        int workingSet = 5_000;
+        int scanId = 0;
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 100_000; i++) {
+                double u = random.nextDouble();
+                trace.add("hot-" + (int) (workingSet * u * u * u)); // skewed towards low ids
+            }
+            for (int i = 0; i < 20_000; i++) {
+                trace.add("scan-" + scanId++);                      // each touched exactly once
+            }
+        }
+        return trace;
+    }
+}
@@ -0,0 +1,86 @@
+package map;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Checkpointing a big concurrent map while writers keep going:
+ *  - ConcurrentHashMap: copy into a HashMap (the ConcurrentHashMapDemo advice), then walk the copy.
+ *  - ConcurrentTrieMap: readOnlySnapshot(), then walk the snapshot.
+ * WRITERS threads put() random keys the whole time. For each checkpoint the time to take the
+ * snapshot/copy and to walk it is printed, plus the writers' put/s during the run (higher is better).
+ * The walk sums the values, standing in for serializing the checkpoint.
+ *
+ * Run:  java -Xmx4g map.TrieSnapshotBenchmark [entries] [checkpoints]   (default 2M entries, 5)
+ * Not a JMH harness: relative numbers on one machine only.
+ */
+public class TrieSnapshotBenchmark {
+
+    static final int WRITERS = 2;
+
+    public static void main(String[] args) throws InterruptedException {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int checkpoints = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        System.out.printf("%-20s %14s %12s %14s%n", "map", "snapshot ms", "walk ms", "writer put/s");
+        ConcurrentHashMap<Long, Long> chm = new ConcurrentHashMap<>();
+        run("ConcurrentHashMap", chm, entries, checkpoints, () -> new HashMap<>(chm));
+        chm.clear();
+
+        ConcurrentTrieMap<Long, Long> trie = new ConcurrentTrieMap<>();
+        run("ConcurrentTrieMap", trie, entries, checkpoints, trie::readOnlySnapshot);
+    }
+
+    interface Checkpoint {
+        Map<Long, Long> take();
+    }
+
+    static void run(String name, Map<Long, Long> map, int entries, int checkpoints, Checkpoint checkpoint)
+            throws InterruptedException {
+        for (long i = 0; i < entries; i++) {
+            map.put(i, i);
+        }
+        AtomicBoolean stop = new AtomicBoolean();
+        LongAdder puts = new LongAdder();
+        Thread[] writers = new Thread[WRITERS];
+        for (int w = 0; w < WRITERS; w++) {
+            writers[w] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long local = 0;
+                while (!stop.get()) {
+                    long key = random.nextLong(entries);
+                    map.put(key, key + 1);
+                    local++;
+                }
+                puts.add(local);
+            });
+            writers[w].start();
+        }
+
+        long start = System.nanoTime();
+        for (int c = 0; c < checkpoints; c++) {
+            long t0 = System.nanoTime();
+            Map<Long, Long> snapshot = checkpoint.take();
+            long t1 = System.nanoTime();
+            long sum = 0;
+            for (Map.Entry<Long, Long> e : snapshot.entrySet()) {
+                sum += e.getValue();
+            }
+            long t2 = System.nanoTime();
+            if (sum < (long) entries * (entries - 1) / 2) {
+                throw new IllegalStateException("values only grow, sum can't be " + sum);
+            }
+            System.out.printf("%-20s %14.3f %12.1f%n", name, (t1 - t0) / 1e6, (t2 - t1) / 1e6);
+        }
+        stop.set(true);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-20s %14s %12s %14.0f%n", name, "", "", puts.sum() / seconds);
+    }
+}
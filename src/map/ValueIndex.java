@@ -0,0 +1,107 @@
+package map;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * value -> keys index used by ValueIndexedMap and ConcurrentValueIndexedMap.
+ *
+ * Most values belong to exactly one key, so a value maps straight to that key; only when a second
+ * key gets the same value is a Keys set created. Every change goes through index.compute(), so with a
+ * ConcurrentHashMap as index the updates for one value are atomic (bin lock of the value).
+ */
+final class ValueIndex<K, V> {
+
+    /** Wrapper, so a key that happens to be a Set isn't mistaken for a set of keys. */
+    static final class Keys<K> {
+        final Set<K> set;
+
+        Keys(Set<K> set) {
+            this.set = set;
+        }
+    }
+
+    private final Map<V, Object> index;
+    private final Supplier<Set<K>> setFactory;
+
+    ValueIndex(Map<V, Object> index, Supplier<Set<K>> setFactory) {
+        this.index = index;
+        this.setFactory = setFactory;
+    }
+
+    static <K, V> ValueIndex<K, V> plain(Map<V, Object> index) {
+        return new ValueIndex<>(index, HashSet::new);
+    }
+
+    void add(V value, K key) {
+        index.compute(value, (v, current) -> {
+            if (current == null) {
+                return mask(key);
+            }
+            if (current instanceof Keys<?>) {
+                keys(current).add(key);
+                return current;
+            }
+            Set<K> set = setFactory.get();
+            set.add(unbox(current));
+            set.add(key);
+            return new Keys<>(set);
+        });
+    }
+
+    void remove(V value, K key) {
+        index.computeIfPresent(value, (v, current) -> {
+            if (current instanceof Keys<?>) {
+                Set<K> set = keys(current);
+                set.remove(key);
+                return set.isEmpty() ? null : current;
+            }
+            return Objects.equals(unbox(current), key) ? null : current;
+        });
+    }
+
+    boolean contains(Object value) {
+        return index.containsKey(value);
+    }
+
+    /** Snapshot of the keys currently mapped to value. */
+    Set<K> keysFor(Object value) {
+        Object current = index.get(value);
+        if (current == null) {
+            return Collections.emptySet();
+        }
+        if (current instanceof Keys<?>) {
+            return Collections.unmodifiableSet(new HashSet<>(keys(current)));
+        }
+        return Collections.singleton(unbox(current));
+    }
+
+    void clear() {
+        index.clear();
+    }
+
+    int distinctValues() {
+        return index.size();
+    }
+
+    // index values can't be null, but a ValueIndexedMap key can
+    private static final Object NULL_KEY = new Object();
+
+    private static Object mask(Object key) {
+        return key == null ? NULL_KEY : key;
+    }
+
+    @SuppressWarnings("unchecked")
+    private K unbox(Object current) {
+        return current == NULL_KEY ? null : (K) current;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<K> keys(Object current) {
+        return ((Keys<K>) current).set;
+    }
+}
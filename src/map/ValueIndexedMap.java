@@ -0,0 +1,136 @@
+package map;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * HashMap with a reverse value -> keys index: containsValue(v) and keysFor(v) are O(1) on average
+ * instead of a scan over all entries (HashMap.containsValue walks the whole table).
+ *
+ * Only put() and remove() touch the data; everything else - putIfAbsent, replace, merge, compute,
+ * computeIfAbsent/Present, replaceAll, entry.setValue(), iterator.remove(), keySet().remove(), ... -
+ * is built on those two (Map's default methods and the entrySet view below), so the index can't get
+ * out of sync. Costs one more hash map: roughly +35 bytes per distinct value.
+ * Not thread-safe, see ConcurrentValueIndexedMap.
+ */
+public class ValueIndexedMap<K, V> extends AbstractMap<K, V> {
+
+    private final HashMap<K, V> forward = new HashMap<>();
+    private final ValueIndex<K, V> index = ValueIndex.plain(new HashMap<>());
+    private Set<Map.Entry<K, V>> entrySet;
+
+    @Override
+    public int size() {
+        return forward.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return forward.containsKey(key);
+    }
+
+    @Override
+    public V get(Object key) {
+        return forward.get(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return index.contains(value);
+    }
+
+    /** Keys currently mapped to value (a snapshot), empty if none. */
+    public Set<K> keysFor(Object value) {
+        return index.keysFor(value);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        boolean existed = forward.containsKey(key);
+        V previous = forward.put(key, value);
+        if (existed && Objects.equals(previous, value)) {
+            return previous;
+        }
+        if (existed) {
+            index.remove(previous, key);
+        }
+        index.add(value, key);
+        return previous;
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (!forward.containsKey(key)) {
+            return null;
+        }
+        V previous = forward.remove(key);
+        unindex(previous, key);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        forward.clear();
+        index.clear();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es = entrySet;
+        return es != null ? es : (entrySet = new EntrySet());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void unindex(V value, Object key) {
+        index.remove(value, (K) key); // key came out of forward, so it is a K
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public int size() {
+            return forward.size();
+        }
+
+        @Override
+        public void clear() {
+            ValueIndexedMap.this.clear();
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            Iterator<Map.Entry<K, V>> it = forward.entrySet().iterator();
+            return new Iterator<>() {
+                Map.Entry<K, V> last;
+
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                public Map.Entry<K, V> next() {
+                    Map.Entry<K, V> e = last = it.next();
+                    return new AbstractMap.SimpleEntry<>(e) {
+                        @Override
+                        public V setValue(V value) {
+                            super.setValue(value);
+                            return put(e.getKey(), value); // HashMap.put on an existing key: no CME
+                        }
+                    };
+                }
+
+                public void remove() {
+                    if (last == null) {
+                        throw new IllegalStateException();
+                    }
+                    it.remove();
+                    unindex(last.getValue(), last.getKey());
+                    last = null;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package map;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * containsValue() on a big map: HashMap scans every entry, ValueIndexedMap asks its value index.
+ * Run:  java -Xmx4g map.ValueIndexedMapDemo [entries]   (default 5M)
+ */
+public class ValueIndexedMapDemo {
+
+    static final int LOOKUPS = 100;
+
+    public static void main(String[] args) {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+
+        // Same calls as HashMapLearn / LinkedHashMapLearn / HashTableDemo
+        ValueIndexedMap<Integer, String> names = new ValueIndexedMap<>();
+        names.put(1, "Rupam");
+        names.put(2, "Subham");
+        names.put(3, "Rupam");
+        System.out.println(names.containsValue("Subham"));    // true, without a scan
+        System.out.println(names.keysFor("Rupam"));           // [1, 3]
+        names.merge(2, "!", String::concat);                  // Subham -> Subham!
+        names.compute(3, (k, v) -> null);                     // removes 3
+        System.out.println(names.keysFor("Rupam") + " " + names.containsValue("Subham")); // [1] false
+
+        ConcurrentValueIndexedMap<String, Integer> scores = new ConcurrentValueIndexedMap<>();
+        scores.put("one", 1);
+        scores.merge("one", 1, Integer::sum);                 // 2
+        System.out.println(scores.containsValue(2) + " " + scores.keysFor(2)); // true [one]
+
+        Map<Integer, Integer> plain = new HashMap<>();
+        Map<Integer, Integer> indexed = new ValueIndexedMap<>();
+        for (int i = 0; i < entries; i++) {
+            plain.put(i, i * 7);
+            indexed.put(i, i * 7);
+        }
+        System.out.printf("%-16s %14s%n", "map", "containsValue");
+        time("HashMap", plain, entries);
+        time("ValueIndexedMap", indexed, entries);
+    }
+
+    static void time(String name, Map<Integer, Integer> map, int entries) {
+        long found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (map.containsValue((entries - 1 - i) * 7)) found++;
+        }
+        long nanos = (System.nanoTime() - start) / LOOKUPS;
+        System.out.printf("%-16s %11.3f ms  (%d found)%n", name, nanos / 1e6, found);
+    }
+}
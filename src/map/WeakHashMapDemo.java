@@ -32,6 +32,51 @@ public class WeakHashMapDemo {
         runApplication(); // Give GC a bit of time
 
         System.out.println("cache after running (some entries may be deleted)\n"+ imageCache) ;
+
+        concurrentImageCache();
+    }
+
+    // WeakHashMap is not thread-safe; wrapped in Collections.synchronizedMap every get() takes one lock
+    // (and expunges stale entries under it). ConcurrentReferenceCache sits on a ConcurrentHashMap instead.
+    private static void concurrentImageCache() {
+        ConcurrentReferenceCache<Integer, Image> imageCache =
+                new ConcurrentReferenceCache<>(ConcurrentReferenceCache.Strength.WEAK, ConcurrentReferenceCache.Strength.SOFT);
+        Integer key1 = 1001, key2 = 1002; // weak keys are compared by identity: keep the exact Integer objects
+
+        fillConcurrently(imageCache, key1, key2);
+        System.out.println("Concurrent cache before GC: " + imageCache.size() + " entries, key2 -> " + imageCache.get(key2).getName());
+
+        key1 = null; // Remove strong reference for key1
+        System.gc();
+        sleep(200); // cleared references are enqueued by the JVM's Reference Handler thread, a bit after GC
+        imageCache.cleanUp(); // normally done a few references at a time by put()/remove()/every 64th get()
+
+        System.out.println("Concurrent cache after GC: " + imageCache.size() + " entries, key2 -> " + imageCache.get(key2).getName());
+    }
+
+    // several threads race to load the same images; putIfAbsent keeps exactly one Image per key
+    private static void fillConcurrently(ConcurrentReferenceCache<Integer, Image> imageCache, Integer... keys) {
+        Thread[] threads = new Thread[4 * keys.length];
+        for (int i = 0; i < threads.length; i++) {
+            Integer key = keys[i % keys.length];
+            threads[i] = new Thread(() -> imageCache.putIfAbsent(key, new Image("Image " + key)));
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     private static void runApplication() {